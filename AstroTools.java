@@ -9,7 +9,6 @@ import java.util.ArrayList;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.util.Scanner;
-import java.util.Iterator;
 import java.io.IOException;
 
 //A collection of tools needed to do things with data
@@ -19,48 +18,23 @@ public class AstroTools {
 	
 	/**
 	 * meanEventProfile is specifically for use on the Kepler DAV object to determine a mean event shape and values
-	 * based on an averaging of all events
+	 * based on an averaging of all events.  Each bin averages the points inside it, and if l is segmented only the
+	 * points in the same segment as the peak of the event count, so no bin reaches across a data gap.
 	 * @param f is a file containing the start time, end time, peak time, and weight of each event
 	 * @param l is a light curve containing data of which @param f is a subset of
 	 * @throws FileNotFoundException should File f not exist
 	 * @throws IOException for scanner issues
 	 */
 	public static void meanEventProfile(File f, Lightcurve l, Boolean w) throws FileNotFoundException, IOException		{
-		Scanner s = new Scanner(f);
-		s.nextLine(); //skip header line
-		//read in file
 		ArrayList<Double> peaks = new ArrayList<Double>();
 		ArrayList<Double> starts = new ArrayList<Double>();
 		ArrayList<Double> ends = new ArrayList<Double>();
 		ArrayList<Double> weights = new ArrayList<Double>();
-			
-		while(s.hasNext())	{
-			starts.add(Double.valueOf(s.next()));
-			ends.add(Double.valueOf(s.next()));
-			peaks.add(Double.valueOf(s.next()));
-			if(w)	{
-				weights.add(Double.valueOf(s.next()));
-			}
-			else	{
-				s.next();
-			}
-		}
-		//determine longest event
-		Double max = Double.valueOf(0);
-		for(int i = 0; i < peaks.size(); i++)	{
-			if(ends.get(i) - peaks.get(i) > max)
-				max = ends.get(i) - peaks.get(i);
-			if(peaks.get(i) - starts.get(i) > max)
-				max = peaks.get(i) - starts.get(i);
-		}
-		//make all events same length based on longest
-		for(int i = 0; i < peaks.size(); i++)	{
-			starts.set(i, peaks.get(i) - max);
-			ends.set(i, peaks.get(i) + max);
-		}
-		//bin the points in each dT and keep count of how many points get placed in each bin
+		readEvents(f, w, starts, ends, peaks, weights);
+		//bin the points in each dT and keep track of the total weight placed in each bin
 		//average each bin
 		ArrayList<Double> bins = new ArrayList<Double>(peaks.size());
+		ArrayList<Double> binWeights = new ArrayList<Double>(peaks.size());
 		boolean add = true;
 		for(int i = 0; i < peaks.size(); i++)	{
 			double time = starts.get(i);
@@ -69,54 +43,62 @@ public class AstroTools {
 				weight = weights.get(i);
 			}
 			
+			//only the points of the segment holding the peak count towards this event
+			Lightcurve event = l.subsection(time, ends.get(i));
+			int[] range = peakSegment(event, peaks.get(i));
+			double first = Double.POSITIVE_INFINITY;
+			double last = Double.NEGATIVE_INFINITY;
+			if(range != null)	{
+				first = event.get(range[0]).getTime();
+				last = event.get(range[1]).getTime();
+			}
+			
 			int step = 0;
 			while(time < ends.get(i))	{
-				Lightcurve temp = l.subsection(time, time + KEPLER_dT + 0.000001);
-				if(add)	{
-					if(w)	{
-						bins.add(temp.averageFlux() * weight);
-					}
-					else	{
-						bins.add(temp.averageFlux());
+				double binEnd = time + KEPLER_dT + 0.000001;
+				Lightcurve temp = l.subsection(time, binEnd);
+				//average the points that are really in the bin; subsection also returns the first point
+				//after binEnd, which may be on the far side of a gap.  A bin with none adds nothing.
+				double fluxSum = 0;
+				int count = 0;
+				for(int j = 0; j < temp.size(); j++)	{
+					double t = temp.get(j).getTime();
+					if(t <= binEnd && t >= first && t <= last)	{
+						fluxSum += temp.get(j).getFlux();
+						count++;
 					}
 				}
-				else
-					if(w)	{
-						bins.set(step, bins.get(step) + (temp.averageFlux() * weight));
-					}
-					else	{
-						bins.set(step, bins.get(step) + (temp.averageFlux()));
-					}	
+				double flux = 0;
+				double binWeight = 0;
+				if(count > 0)	{
+					flux = fluxSum / count * weight;
+					binWeight = weight;
+				}
+				if(add)	{
+					bins.add(flux);
+					binWeights.add(binWeight);
+				}
+				else	{
+					bins.set(step, bins.get(step) + flux);
+					binWeights.set(step, binWeights.get(step) + binWeight);
+				}
 				step++;
 				time += KEPLER_dT;
 			}
 			add = false;
 		}
 		
-		if(w)	{
-			//sum all weights
-			double weightSum = 0;
-			for(double wVal : weights)	{
-				weightSum += wVal;
-			}
-			for(int i = 0; i < bins.size(); i++)	{
-				bins.set(i, bins.get(i) / weightSum);
-			}
-		}	
-		
-		//add each bins flux to a model event LC with the peak centered at zero
+		//add each bins flux to a model event LC with the peak centered at zero, leaving out
+		//bins that no event had data for
 		Lightcurve result = new Lightcurve();
-		Iterator<Double> it = bins.iterator();
 		double time = 0 - (peaks.get(0) - starts.get(0));
-		while(it.hasNext())	{
-			if(w)	{
-				result.add(new DataPoint(time, it.next()));
-			}
-			else	{
-				result.add(new DataPoint(time, it.next() / peaks.size()));
-			}
+		for(int i = 0; i < bins.size(); i++)	{
+			if(binWeights.get(i) > 0)
+				result.add(new DataPoint(time, bins.get(i) / binWeights.get(i)));
 			time += KEPLER_dT;
 		}
+		//bins left out above are gaps in the result, so keep the smoothing below from averaging across them
+		result.segmentByCadence(KEPLER_dT);
 		
 //		result.normalizeTime(0 - (peaks.get(0) - starts.get(0)), ends.get(0) - peaks.get(0));
 //		result.normalizeFlux();
@@ -125,4 +107,141 @@ public class AstroTools {
 		result.boxcarSmooth(15).toFile("../20150616/meanEventShape_smooth15_20150616_noWeight.dat");
 		result.boxcarSmooth(5).toFile("../20150616/meanEventShape_smooth5_20150616_noWeight.dat");
 	}
+	
+	/**
+	 * stackEvents is the inverse-variance weighted counterpart of meanEventProfile.  Each point contributes
+	 * with its own DataPoint weight (1/sigma^2), multiplied by the weight of its event if w is true.
+	 * The weighted mean, its propagated error and the effective sample count of every bin are accumulated
+	 * in a single pass over the points of each event, rather than one subsection per bin.
+	 * If l is segmented, only the segment holding the peak of an event is used for that event, and events
+	 * whose peak falls in a gap are skipped.  Bins that no event has data for are left out.
+	 * @param f is a file containing the start time, end time, peak time, and weight of each event
+	 * @param l is a light curve containing data of which @param f is a subset of
+	 * @param w is true if the event weights in f should be used
+	 * @return the stacked event with the peak centered at zero
+	 * @throws FileNotFoundException should File f not exist
+	 */
+	public static PropagatedLightcurve stackEvents(File f, Lightcurve l, Boolean w) throws FileNotFoundException	{
+		ArrayList<Double> peaks = new ArrayList<Double>();
+		ArrayList<Double> starts = new ArrayList<Double>();
+		ArrayList<Double> ends = new ArrayList<Double>();
+		ArrayList<Double> weights = new ArrayList<Double>();
+		readEvents(f, w, starts, ends, peaks, weights);
+		if(peaks.size() == 0)
+			throw new IllegalArgumentException("The event file does not contain any events.");
+		
+		//all events are the same length, so they share the same number of bins
+		double halfWidth = peaks.get(0) - starts.get(0);
+		int binCount = (int) Math.ceil((2 * halfWidth) / KEPLER_dT);
+		
+		//per bin sums of a, a*flux and a^2, where a = eventWeight * pointWeight, and of
+		//eventWeight^2 * pointWeight, which is the variance of the numerator
+		double[] aSum = new double[binCount];
+		double[] afSum = new double[binCount];
+		double[] a2Sum = new double[binCount];
+		double[] varSum = new double[binCount];
+		
+		for(int i = 0; i < peaks.size(); i++)	{
+			double eventWeight = 1.0;
+			if(w)
+				eventWeight = weights.get(i);
+			double start = starts.get(i);
+			
+			Lightcurve event = l.subsection(start, ends.get(i));
+			int[] range = peakSegment(event, peaks.get(i));
+			if(range == null)
+				continue;
+			for(int j = range[0]; j <= range[1]; j++)	{
+				DataPoint d = event.get(j);
+				int bin = (int) ((d.getTime() - start) / KEPLER_dT);
+				if(bin < 0 || bin >= binCount)
+					continue;
+				double a = eventWeight * d.getWeight();
+				aSum[bin] += a;
+				afSum[bin] += a * d.getFlux();
+				a2Sum[bin] += a * a;
+				varSum[bin] += eventWeight * a;
+			}
+		}
+		
+		int filled = 0;
+		for(int i = 0; i < binCount; i++)	{
+			if(aSum[i] > 0)
+				filled++;
+		}
+		
+		Lightcurve result = new Lightcurve();
+		double[] errors = new double[filled];
+		double[] counts = new double[filled];
+		double time = 0 - halfWidth;
+		int point = 0;
+		for(int i = 0; i < binCount; i++)	{
+			if(aSum[i] > 0)	{
+				double sigma = Math.sqrt(varSum[i]) / aSum[i];
+				result.add(new DataPoint(time, afSum[i] / aSum[i], 1.0 / (sigma * sigma)));
+				errors[point] = sigma;
+				counts[point] = (aSum[i] * aSum[i]) / a2Sum[i];
+				point++;
+			}
+			time += KEPLER_dT;
+		}
+		
+		return new PropagatedLightcurve(result, errors, counts);
+	}
+	
+	/**
+	 * Find the points of an event that are in the same segment as its peak
+	 * @param event is the subsection of the light curve covering the event
+	 * @param peak is the peak time of the event
+	 * @return the first and last index of those points in event, all of event if it is not
+	 * segmented, or null if the peak falls in a gap
+	 */
+	private static int[] peakSegment(Lightcurve event, double peak)	{
+		SegmentIndex segments = event.getSegments();
+		if(segments == null)
+			return new int[] {0, event.size() - 1};
+		for(int s = 0; s < segments.size(); s++)	{
+			if(event.get(segments.getStart(s)).getTime() <= peak && event.get(segments.getEnd(s)).getTime() >= peak)
+				return new int[] {segments.getStart(s), segments.getEnd(s)};
+		}
+		return null;
+	}
+	
+	/**
+	 * Read an event file and make all events the same length, based on the longest one
+	 * @param f is a file containing the start time, end time, peak time, and weight of each event
+	 * @param w is true if the weights should be kept
+	 * @throws FileNotFoundException should File f not exist
+	 */
+	private static void readEvents(File f, Boolean w, ArrayList<Double> starts, ArrayList<Double> ends,
+			ArrayList<Double> peaks, ArrayList<Double> weights) throws FileNotFoundException	{
+		Scanner s = new Scanner(f);
+		s.nextLine(); //skip header line
+		//read in file
+		while(s.hasNext())	{
+			starts.add(Double.valueOf(s.next()));
+			ends.add(Double.valueOf(s.next()));
+			peaks.add(Double.valueOf(s.next()));
+			if(w)	{
+				weights.add(Double.valueOf(s.next()));
+			}
+			else	{
+				s.next();
+			}
+		}
+		s.close();
+		//determine longest event
+		Double max = Double.valueOf(0);
+		for(int i = 0; i < peaks.size(); i++)	{
+			if(ends.get(i) - peaks.get(i) > max)
+				max = ends.get(i) - peaks.get(i);
+			if(peaks.get(i) - starts.get(i) > max)
+				max = peaks.get(i) - starts.get(i);
+		}
+		//make all events same length based on longest
+		for(int i = 0; i < peaks.size(); i++)	{
+			starts.set(i, peaks.get(i) - max);
+			ends.set(i, peaks.get(i) + max);
+		}
+	}
 }
@@ -0,0 +1,54 @@
+/**
+ * Benchmark of BoxLeastSquares on a synthetic Kepler short cadence Lightcurve with a transit in it.
+ * Arguments, all optional:  points (1000000)  periods (50000)  threads (all cores)  timeResolution (0)
+ *
+ */
+
+//import statements:
+import java.util.Random;
+
+public class BLSBenchmark {
+
+	private static final double KEPLER_dT = 58.84876;
+	private static final double DAY = 86400;
+
+	/**
+	 * @param args is the optional arguments listed above
+	 */
+	public static void main(String[] args)	{
+		int points = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+		int periods = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+		int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+		double resolution = args.length > 3 ? Double.parseDouble(args[3]) : 0;
+
+		//a 0.5% deep, 3 hour transit every 3.7 days in 0.1% noise
+		double period = 3.7 * DAY;
+		double duration = 0.125 * DAY;
+		double epoch = 1.0 * DAY;
+		Random r = new Random(42);
+		Lightcurve l = new Lightcurve();
+		for(int i = 0; i < points; i++)	{
+			double time = i * KEPLER_dT;
+			double phase = (time - epoch) / period;
+			phase -= Math.floor(phase + 0.5);
+			double flux = 1 + 0.001 * r.nextGaussian();
+			if(Math.abs(phase * period) < duration / 2)
+				flux -= 0.005;
+			l.add(new DataPoint(time, flux, 1.0E6));
+		}
+
+		long start = System.nanoTime();
+		BoxLeastSquares bls = new BoxLeastSquares(l, 200, new int[] {1, 2, 3, 4, 6, 8, 12, 16, 20}, resolution);
+		bls.setThreads(threads);
+		long prepared = System.nanoTime();
+		BLSResult result = bls.search(0.5 * DAY, 20 * DAY, periods);
+		long done = System.nanoTime();
+
+		System.out.println("Points: " + points + " (" + bls.size() + " searched)  Periods: " + periods + "  Threads: " + threads);
+		System.out.println("Setup:  " + (prepared - start) / 1.0E6 + " ms");
+		System.out.println("Search: " + (done - prepared) / 1.0E6 + " ms, "
+				+ (done - prepared) / (double) periods / 1.0E3 + " us per period");
+		System.out.println("Best:   " + result);
+		System.out.println("Truth:  Period: " + period + " Epoch: " + epoch + " Depth: 0.005 Duration: " + duration);
+	}
+}
@@ -0,0 +1,107 @@
+/**
+ * Class to hold the result of a BoxLeastSquares search: the power at every trial period, and the
+ * period, epoch, depth and duration of the best box found.
+ *
+ */
+
+//import statements:
+import java.io.File;
+import java.io.IOException;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+
+public class BLSResult {
+	//instance variables
+	private double[] periods;
+	private double[] power;
+	private double bestPeriod;
+	private double bestEpoch;
+	private double bestDepth;
+	private double bestDuration;
+
+	/**
+	 * Create a BLSResult
+	 * @param p is the trial periods
+	 * @param pow is the power at each trial period
+	 * @param period is the period of the best box
+	 * @param epoch is the time of the middle of the best box
+	 * @param depth is the depth of the best box, positive for a dip
+	 * @param duration is the duration of the best box
+	 */
+	public BLSResult(double[] p, double[] pow, double period, double epoch, double depth, double duration)	{
+		periods = p;
+		power = pow;
+		bestPeriod = period;
+		bestEpoch = epoch;
+		bestDepth = depth;
+		bestDuration = duration;
+	}
+
+	/**
+	 * @return the trial periods
+	 */
+	public double[] getPeriods()	{
+		return periods;
+	}
+
+	/**
+	 * @return the power at each trial period
+	 */
+	public double[] getPower()	{
+		return power;
+	}
+
+	/**
+	 * @return the power spectrum as a Lightcurve, with the period in place of the time and the power in place of the flux
+	 */
+	public Lightcurve getSpectrum()	{
+		Lightcurve spectrum = new Lightcurve();
+		for(int i = 0; i < periods.length; i++)
+			spectrum.add(new DataPoint(periods[i], power[i]));
+		return spectrum;
+	}
+
+	/**
+	 * @return the period of the best box
+	 */
+	public double getBestPeriod()	{
+		return bestPeriod;
+	}
+
+	/**
+	 * @return the time of the middle of the first best box after the start of the Lightcurve
+	 */
+	public double getBestEpoch()	{
+		return bestEpoch;
+	}
+
+	/**
+	 * @return the depth of the best box, in flux units, positive for a dip
+	 */
+	public double getBestDepth()	{
+		return bestDepth;
+	}
+
+	/**
+	 * @return the duration of the best box, in time units
+	 */
+	public double getBestDuration()	{
+		return bestDuration;
+	}
+
+	/**
+	 * Summary of the best box in the format:  Period: #### Epoch: #### Depth: #### Duration: ####
+	 */
+	public String toString()	{
+		return "Period: " + bestPeriod + " Epoch: " + bestEpoch + " Depth: " + bestDepth + " Duration: " + bestDuration;
+	}
+
+	/**
+	 * Prints the power spectrum to a file, one line per trial period in the format:  period power
+	 * @param fName is the name of a file.  It can already exist, or not exist.  Both are handled.
+	 * @throws IOException
+	 */
+	public void toFile(String fName) throws IOException	{
+		getSpectrum().toFile(fName);
+	}
+}
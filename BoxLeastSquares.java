@@ -0,0 +1,272 @@
+/**
+ * Box Least Squares (Kovacs, Zucker and Mazeh 2002) search for transits and eclipses in a Lightcurve.
+ * <p>
+ * The time, flux and weight of the Lightcurve are copied once into primitive arrays, with the flux
+ * taken relative to its weighted mean and the weights scaled to sum to 1.  For each trial period the
+ * points are folded into phase bins in a single loop, and the cumulative sums of weight and weighted
+ * flux over the bins are taken.  Every box (start bin, duration) is then scored in O(1) from two
+ * differences of cumulative sums, so after the fold a period costs O(bins * durations) rather than
+ * O(n * durations).  The fold itself is still O(n) per period; for very long curves the points can
+ * first be binned in time, at a resolution well below the shortest duration, to shrink n.
+ * Trial periods are shared out between threads, each with its own scratch arrays.
+ *
+ */
+
+//import statements:
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class BoxLeastSquares {
+	//instance variables
+	private double referenceTime;
+	private double[] times;	//relative to referenceTime
+	private double[] weights;	//sum to 1
+	private double[] weightedFluxes;	//weight * (flux - weighted mean flux)
+	private int phaseBins;
+	private int[] durationBins;
+	private int threads;
+
+	//number of trial periods handed to a thread at a time
+	private static final int CHUNK = 64;
+
+	/**
+	 * Prepare a search with 200 phase bins and box durations from 0.5% to 10% of the period
+	 * @param l is the Lightcurve to search
+	 */
+	public BoxLeastSquares(Lightcurve l)	{
+		this(l, 200, new int[] {1, 2, 3, 4, 6, 8, 12, 16, 20}, 0);
+	}
+
+	/**
+	 * Prepare a search
+	 * @param l is the Lightcurve to search
+	 * @param bins is the number of phase bins the period is folded into
+	 * @param durations is the box durations to try, in phase bins
+	 * @param timeResolution is the width of the time bins the points are combined into before
+	 * searching, or 0 to search the points as they are
+	 */
+	public BoxLeastSquares(Lightcurve l, int bins, int[] durations, double timeResolution)	{
+		if(l.size() < 2)
+			throw new IllegalArgumentException("The Lightcurve must have at least two points.");
+		if(bins < 2)
+			throw new IllegalArgumentException("There must be at least two phase bins.");
+		if(durations.length == 0)
+			throw new IllegalArgumentException("There must be at least one duration to try.");
+		for(int d : durations)	{
+			if(d < 1 || d >= bins)
+				throw new IllegalArgumentException("Each duration must be from 1 to " + (bins - 1) + " phase bins.");
+		}
+		phaseBins = bins;
+		durationBins = durations.clone();
+		threads = Runtime.getRuntime().availableProcessors();
+
+		//copy the curve into primitive arrays, binning in time if asked to
+		int size = l.size();
+		referenceTime = l.get(0).getTime();
+		double[] t = new double[size];
+		double[] w = new double[size];
+		double[] wf = new double[size];
+		int n = 0;
+		double binEnd = Double.NEGATIVE_INFINITY;
+		for(int i = 0; i < size; i++)	{
+			DataPoint d = l.get(i);
+			double time = d.getTime() - referenceTime;
+			if(timeResolution <= 0 || time >= binEnd)	{
+				n++;
+				binEnd = time + timeResolution;
+			}
+			//t holds the weighted sum of times until the bins are closed below
+			t[n - 1] += d.getWeight() * time;
+			w[n - 1] += d.getWeight();
+			wf[n - 1] += d.getWeight() * d.getFlux();
+		}
+
+		times = new double[n];
+		weights = new double[n];
+		weightedFluxes = new double[n];
+		double wSum = 0;
+		double wfSum = 0;
+		for(int i = 0; i < n; i++)	{
+			wSum += w[i];
+			wfSum += wf[i];
+		}
+		if(!(wSum > 0))
+			throw new IllegalArgumentException("The weights of the Lightcurve must sum to more than zero.");
+		double mean = wfSum / wSum;
+		for(int i = 0; i < n; i++)	{
+			times[i] = w[i] > 0 ? t[i] / w[i] : t[i];
+			weights[i] = w[i] / wSum;
+			weightedFluxes[i] = (wf[i] - w[i] * mean) / wSum;
+		}
+	}
+
+	/**
+	 * @return the number of points searched, after any binning in time
+	 */
+	public int size()	{
+		return times.length;
+	}
+
+	/**
+	 * @param n is the number of threads to share the trial periods between
+	 */
+	public void setThreads(int n)	{
+		if(n < 1)
+			throw new IllegalArgumentException("There must be at least one thread.");
+		threads = n;
+	}
+
+	/**
+	 * Search trial periods spaced evenly in frequency between minPeriod and maxPeriod
+	 * @param minPeriod is the shortest trial period
+	 * @param maxPeriod is the longest trial period
+	 * @param count is the number of trial periods
+	 * @return the power spectrum and the best box
+	 */
+	public BLSResult search(double minPeriod, double maxPeriod, int count)	{
+		if(!(minPeriod > 0) || !(maxPeriod >= minPeriod) || count < 1)
+			throw new IllegalArgumentException("The periods must satisfy 0 < minPeriod <= maxPeriod, with at least one trial.");
+		double[] periods = new double[count];
+		double maxFrequency = 1.0 / minPeriod;
+		double minFrequency = 1.0 / maxPeriod;
+		double step = count > 1 ? (maxFrequency - minFrequency) / (count - 1) : 0;
+		for(int i = 0; i < count; i++)
+			periods[i] = 1.0 / (maxFrequency - i * step);
+		return search(periods);
+	}
+
+	/**
+	 * Search the given trial periods
+	 * @param periods is the trial periods, in the time units of the Lightcurve
+	 * @return the power spectrum and the best box
+	 */
+	public BLSResult search(final double[] periods)	{
+		final double[] power = new double[periods.length];
+		final AtomicInteger next = new AtomicInteger(0);
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ArrayList<Future<double[]>> workers = new ArrayList<Future<double[]>>();
+		for(int k = 0; k < threads; k++)	{
+			workers.add(pool.submit(() ->	{
+				//scratch arrays, reused for every period this thread takes
+				double[] box = new double[5];
+				double[] best = new double[] {-1, 0, 0, 0, 0};
+				double[] binW = new double[phaseBins];
+				double[] binWF = new double[phaseBins];
+				int maxDuration = 0;
+				for(int d : durationBins)
+					maxDuration = Math.max(maxDuration, d);
+				double[] cumW = new double[phaseBins + maxDuration + 1];
+				double[] cumWF = new double[phaseBins + maxDuration + 1];
+
+				int start;
+				while((start = next.getAndAdd(CHUNK)) < periods.length)	{
+					int end = Math.min(start + CHUNK, periods.length);
+					for(int p = start; p < end; p++)	{
+						evaluate(periods[p], binW, binWF, cumW, cumWF, box);
+						power[p] = box[0];
+						if(box[0] > best[0])	{
+							System.arraycopy(box, 0, best, 0, box.length);
+						}
+					}
+				}
+				return best;
+			}));
+		}
+
+		//keep the best box over all the threads
+		double[] best = null;
+		try	{
+			for(Future<double[]> f : workers)	{
+				double[] b = f.get();
+				if(best == null || b[0] > best[0])
+					best = b;
+			}
+		}
+		catch(InterruptedException e)	{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("The search was interrupted.", e);
+		}
+		catch(ExecutionException e)	{
+			throw new IllegalStateException("The search failed.", e.getCause());
+		}
+		finally	{
+			pool.shutdown();
+		}
+
+		return new BLSResult(periods, power, best[1], referenceTime + best[2], best[3], best[4]);
+	}
+
+	/**
+	 * Fold the points at one trial period and find its best box
+	 * @param period is the trial period
+	 * @param binW is scratch space for the weight in each phase bin
+	 * @param binWF is scratch space for the weighted flux in each phase bin
+	 * @param cumW is scratch space for the cumulative weight, wrapped around past the last bin
+	 * @param cumWF is scratch space for the cumulative weighted flux
+	 * @param box receives {power, period, epoch, depth, duration} of the best box
+	 */
+	private void evaluate(double period, double[] binW, double[] binWF, double[] cumW, double[] cumWF, double[] box)	{
+		int bins = phaseBins;
+		double frequency = 1.0 / period;
+		Arrays.fill(binW, 0);
+		Arrays.fill(binWF, 0);
+
+		//fold
+		int n = times.length;
+		for(int i = 0; i < n; i++)	{
+			double phase = times[i] * frequency;
+			phase -= (long) phase;
+			if(phase < 0)
+				phase += 1;
+			int b = (int) (phase * bins);
+			if(b >= bins)
+				b = bins - 1;
+			binW[b] += weights[i];
+			binWF[b] += weightedFluxes[i];
+		}
+
+		//cumulative sums, wrapped so that boxes can run over phase 1
+		int length = cumW.length - 1;
+		cumW[0] = 0;
+		cumWF[0] = 0;
+		for(int k = 0; k < length; k++)	{
+			int b = k < bins ? k : k - bins;
+			cumW[k + 1] = cumW[k] + binW[b];
+			cumWF[k + 1] = cumWF[k] + binWF[b];
+		}
+
+		//score every box; only dips, where the weighted flux in the box is below the mean, count
+		double bestPower = 0;
+		int bestStart = 0;
+		int bestDuration = durationBins[0];
+		double bestDepth = 0;
+		for(int d : durationBins)	{
+			for(int s = 0; s < bins; s++)	{
+				double r = cumW[s + d] - cumW[s];
+				double sf = cumWF[s + d] - cumWF[s];
+				if(sf >= 0 || r <= 0 || r >= 1)
+					continue;
+				double rr = r * (1 - r);
+				double p = sf * sf / rr;
+				if(p > bestPower)	{
+					bestPower = p;
+					bestStart = s;
+					bestDuration = d;
+					bestDepth = -sf / rr;
+				}
+			}
+		}
+
+		box[0] = bestPower;
+		box[1] = period;
+		box[2] = period * ((bestStart + bestDuration / 2.0) % bins) / bins;
+		box[3] = bestDepth;
+		box[4] = period * bestDuration / bins;
+	}
+}
@@ -0,0 +1,111 @@
+/**
+ * Compare the results of the standard Lightcurve operations in full double mode and in the
+ * compact (float) mode of CompactLightcurve, and print the largest differences.
+ * Run with a data file and its cadence, or with no arguments to use a synthetic
+ * 1M point Kepler short cadence curve.
+ *
+ */
+
+//import statements:
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.util.Random;
+
+public class CompactComparison {
+
+	private static final double KEPLER_dT = 58.84876;
+
+	/**
+	 * @param args is either empty, or a data file name followed by its cadence
+	 */
+	public static void main(String[] args) throws FileNotFoundException	{
+		Lightcurve full;
+		double cadence = KEPLER_dT;
+		if(args.length >= 2)	{
+			full = new Lightcurve(new File(args[0]));
+			cadence = Double.parseDouble(args[1]);
+		}
+		else	{
+			full = syntheticCurve(1000000);
+		}
+		CompactLightcurve compact = full.toCompact(cadence);
+		System.out.println("Points: " + full.size());
+
+		//storage
+		double maxTimeError = 0;
+		double maxFluxError = 0;
+		for(int i = 0; i < full.size(); i++)	{
+			DataPoint d = full.get(i);
+			maxTimeError = Math.max(maxTimeError, Math.abs(compact.getTime(i) - d.getTime()));
+			maxFluxError = Math.max(maxFluxError, relative(compact.getFlux(i), d.getFlux()));
+		}
+		System.out.println("time, max absolute error:            " + maxTimeError);
+		System.out.println("flux, max relative error:            " + maxFluxError);
+
+		//reductions
+		System.out.println("averageFlux, relative error:         " + relative(compact.averageFlux(), full.averageFlux()));
+		System.out.println("weightedAverageFlux, relative error: " + relative(compact.weightedAverageFlux(), full.weightedAverageFlux()));
+		System.out.println("getMinFlux, relative error:          " + relative(compact.getMinFlux(), full.getMinFlux()));
+		System.out.println("getMaxFlux, relative error:          " + relative(compact.getMaxFlux(), full.getMaxFlux()));
+
+		//transforms
+		System.out.println("normalizeFlux, max absolute error:   " + maxFluxDifference(compact.normalizeFlux(), full.normalizeFlux()));
+		System.out.println("boxcarSmooth(15), max relative error: " + maxRelativeFluxDifference(compact.boxcarSmooth(15), full.boxcarSmooth(15)));
+
+		double start = full.get(full.size() / 4).getTime();
+		double end = full.get(full.size() / 2).getTime();
+		CompactLightcurve compactSub = compact.subsection(start, end);
+		Lightcurve fullSub = full.subsection(start, end);
+		System.out.println("subsection, points (compact / full): " + compactSub.size() + " / " + fullSub.size());
+	}
+
+	/**
+	 * Build a Kepler-like curve: short cadence sampling with millisecond jitter, a 1 day gap every
+	 * 100000 points and a 90.3 day missing quarter halfway through, flux around 1e4 with 1% noise,
+	 * weights of 1/sigma^2
+	 * @param n is the number of points
+	 * @return the curve
+	 */
+	private static Lightcurve syntheticCurve(int n)	{
+		Random r = new Random(42);
+		Lightcurve l = new Lightcurve();
+		double time = 1.0480054E8;
+		for(int i = 0; i < n; i++)	{
+			if(i > 0 && i % 100000 == 0)
+				time += 86400;
+			if(i == n / 2 + 12345)
+				time += 90.3 * 86400;
+			double flux = 1.0E4 * (1 + 0.01 * r.nextGaussian());
+			l.add(new DataPoint(time + 0.001 * r.nextGaussian(), flux, 1.0E-4 * (0.5 + r.nextDouble())));
+			time += KEPLER_dT;
+		}
+		return l;
+	}
+
+	/**
+	 * @return |a - b| / |b|
+	 */
+	private static double relative(double a, double b)	{
+		return Math.abs(a - b) / Math.abs(b);
+	}
+
+	/**
+	 * @return the largest absolute flux difference between two curves of the same size
+	 */
+	private static double maxFluxDifference(CompactLightcurve c, Lightcurve l)	{
+		double max = 0;
+		for(int i = 0; i < l.size(); i++)
+			max = Math.max(max, Math.abs(c.getFlux(i) - l.get(i).getFlux()));
+		return max;
+	}
+
+	/**
+	 * @return the largest relative flux difference between two curves of the same size
+	 */
+	private static double maxRelativeFluxDifference(CompactLightcurve c, Lightcurve l)	{
+		double max = 0;
+		for(int i = 0; i < l.size(); i++)
+			max = Math.max(max, relative(c.getFlux(i), l.get(i).getFlux()));
+		return max;
+	}
+}
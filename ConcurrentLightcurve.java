@@ -0,0 +1,312 @@
+/**
+ * An append-only Lightcurve for live ingestion.  One writer thread appends samples while any number
+ * of reader threads query the data, and no one takes a lock.
+ * <p>
+ * Samples are kept as primitives in fixed-size chunks.  A chunk is never moved, and a published
+ * sample is never changed.  The directory of chunks is copied into a bigger array when it grows, and
+ * a new chunk is published in the directory before any sample in it.  The writer fills in a sample
+ * and only then advances the volatile published size, so a reader that reads the size and then the
+ * directory sees every sample below that size, complete.
+ * snapshot() captures that pair, and the Snapshot it returns is an immutable, consistent view that
+ * the stats, subsection and smoothing methods run against.
+ * <p>
+ * Only one thread may call append.  Times must be appended in increasing order.
+ *
+ */
+
+//import statements:
+import java.util.concurrent.atomic.AtomicReference;
+
+public class ConcurrentLightcurve {
+	//instance variables
+	private volatile Chunk[] directory;
+	private volatile int size;
+	private final AtomicReference<Thread> writer = new AtomicReference<Thread>();
+
+	//each chunk holds 2^CHUNK_SHIFT samples
+	private static final int CHUNK_SHIFT = 12;
+	private static final int CHUNK_SIZE = 1 << CHUNK_SHIFT;
+	private static final int CHUNK_MASK = CHUNK_SIZE - 1;
+
+	/**
+	 * Zero argument constructor to create an empty ConcurrentLightcurve
+	 */
+	public ConcurrentLightcurve()	{
+		directory = new Chunk[0];
+		size = 0;
+	}
+
+	/**
+	 * Append a sample.  Only one thread, the first one to call this, may append.
+	 * @param time is the time of the sample, which must be a number and must not be before the last one
+	 * @param flux is the flux of the sample
+	 * @param weight is the weight of the sample
+	 */
+	public void append(double time, double flux, double weight)	{
+		//the first thread to get here claims the writer role with a compare-and-set, so two cannot both win
+		Thread current = Thread.currentThread();
+		if(writer.get() != current && !writer.compareAndSet(null, current))
+			throw new IllegalStateException("Only one thread may append to a ConcurrentLightcurve.");
+
+		int index = size;
+		int c = index >> CHUNK_SHIFT;
+		Chunk[] chunks = directory;
+		//a NaN time would break the binary search of every snapshot, so it is rejected too
+		if(Double.isNaN(time))
+			throw new IllegalArgumentException("The time of a sample must be a number.");
+		if(index > 0)	{
+			double last = chunks[(index - 1) >> CHUNK_SHIFT].times[(index - 1) & CHUNK_MASK];
+			if(!(time >= last))
+				throw new IllegalArgumentException("Samples must be appended in time order.  " + time + " is before " + last);
+		}
+		if(c == chunks.length)	{
+			Chunk[] grown = new Chunk[Math.max(2 * chunks.length, 4)];
+			System.arraycopy(chunks, 0, grown, 0, chunks.length);
+			chunks = grown;
+		}
+		if(chunks[c] == null)	{
+			chunks[c] = new Chunk();
+			//publish the directory before any sample in the new chunk
+			directory = chunks;
+		}
+
+		Chunk chunk = chunks[c];
+		int i = index & CHUNK_MASK;
+		chunk.times[i] = time;
+		chunk.fluxes[i] = flux;
+		chunk.weights[i] = weight;
+		//publish the sample
+		size = index + 1;
+	}
+
+	/**
+	 * Append a DataPoint.  Only one thread may append.
+	 * @param p is the DataPoint to append
+	 */
+	public void add(DataPoint p)	{
+		append(p.getTime(), p.getFlux(), p.getWeight());
+	}
+
+	/**
+	 * @return the number of samples published so far
+	 */
+	public int size()	{
+		return size;
+	}
+
+	/**
+	 * Take a consistent view of every sample published so far, without blocking the writer
+	 * @return the Snapshot
+	 */
+	public Snapshot snapshot()	{
+		//read the size before the directory, as the writer publishes them in the other order
+		int n = size;
+		return new Snapshot(directory, n);
+	}
+
+	/**
+	 * A fixed-size block of samples
+	 */
+	private static class Chunk	{
+		private final double[] times = new double[CHUNK_SIZE];
+		private final double[] fluxes = new double[CHUNK_SIZE];
+		private final double[] weights = new double[CHUNK_SIZE];
+	}
+
+	/**
+	 * An immutable view of the first n samples of a ConcurrentLightcurve.  The queries have the same
+	 * meaning as the Lightcurve methods of the same name.
+	 */
+	public static class Snapshot	{
+		private final Chunk[] chunks;
+		private final int size;
+
+		private Snapshot(Chunk[] c, int n)	{
+			chunks = c;
+			size = n;
+		}
+
+		/**
+		 * @return the number of samples in the snapshot
+		 */
+		public int size()	{
+			return size;
+		}
+
+		/**
+		 * @param index is the index of a sample
+		 * @return the time of the sample
+		 */
+		public double getTime(int index)	{
+			checkIndex(index);
+			return chunks[index >> CHUNK_SHIFT].times[index & CHUNK_MASK];
+		}
+
+		/**
+		 * @param index is the index of a sample
+		 * @return the flux of the sample
+		 */
+		public double getFlux(int index)	{
+			checkIndex(index);
+			return chunks[index >> CHUNK_SHIFT].fluxes[index & CHUNK_MASK];
+		}
+
+		/**
+		 * @param index is the index of a sample
+		 * @return the weight of the sample
+		 */
+		public double getWeight(int index)	{
+			checkIndex(index);
+			return chunks[index >> CHUNK_SHIFT].weights[index & CHUNK_MASK];
+		}
+
+		/**
+		 * @return the average flux of the snapshot
+		 */
+		public double averageFlux()	{
+			double fluxSum = 0;
+			int c = 0;
+			for(int start = 0; start < size; start += CHUNK_SIZE)	{
+				double[] fluxes = chunks[c++].fluxes;
+				int end = Math.min(CHUNK_SIZE, size - start);
+				for(int i = 0; i < end; i++)
+					fluxSum += fluxes[i];
+			}
+			return fluxSum / size;
+		}
+
+		/**
+		 * @return the weighted average flux of the snapshot
+		 */
+		public double weightedAverageFlux()	{
+			double fluxSum = 0;
+			double totalCount = 0;
+			int c = 0;
+			for(int start = 0; start < size; start += CHUNK_SIZE)	{
+				Chunk chunk = chunks[c++];
+				int end = Math.min(CHUNK_SIZE, size - start);
+				for(int i = 0; i < end; i++)	{
+					fluxSum += chunk.fluxes[i] * chunk.weights[i];
+					totalCount += chunk.weights[i];
+				}
+			}
+			return fluxSum / totalCount;
+		}
+
+		/**
+		 * @return the value of the maximum flux in the snapshot
+		 */
+		public double getMaxFlux()	{
+			checkIndex(0);
+			double maximum = getFlux(0);
+			for(int i = 1; i < size; i++)	{
+				double flux = chunks[i >> CHUNK_SHIFT].fluxes[i & CHUNK_MASK];
+				if(flux > maximum)
+					maximum = flux;
+			}
+			return maximum;
+		}
+
+		/**
+		 * @return the value of the minimum flux in the snapshot
+		 */
+		public double getMinFlux()	{
+			checkIndex(0);
+			double minimum = getFlux(0);
+			for(int i = 1; i < size; i++)	{
+				double flux = chunks[i >> CHUNK_SHIFT].fluxes[i & CHUNK_MASK];
+				if(flux < minimum)
+					minimum = flux;
+			}
+			return minimum;
+		}
+
+		/**
+		 * Returns the samples from the first time greater than or equal to startTime to the last time
+		 * smaller than or equal to endTime, found by binary search
+		 * @param startTime is a double denoting the start time of the subsection
+		 * @param endTime is a double denoting the end time of the subsection
+		 * @return a Lightcurve of the subsection
+		 */
+		public Lightcurve subsection(double startTime, double endTime)	{
+			int first = firstIndexAtOrAfter(startTime);
+			int last = firstIndexAtOrAfter(Math.nextUp(endTime)) - 1;
+			return toLightcurve(first, last);
+		}
+
+		/**
+		 * Return a boxcar smoothed copy of the snapshot, with the same boxcar as Lightcurve.boxcarSmooth.
+		 * The window sum is kept in double and slid along the samples.
+		 * @param binSize is the number of points to include in the boxcar.  If the binSize is even, it will
+		 * be increased by 1.
+		 * @return a Lightcurve that is a boxcar smoothed version of the snapshot
+		 */
+		public Lightcurve boxcarSmooth(int binSize)	{
+			//ensure binSize is odd, and correct accordingly
+			if(binSize % 2 != 1)
+				binSize += 1;
+			int halfBin = binSize / 2;
+
+			Lightcurve smooth = new Lightcurve();
+			double sum = 0;
+			for(int j = 0; j < binSize - 1 && j < size; j++)
+				sum += getFlux(j);
+			for(int i = 0; i < size; i++)	{
+				double flux = getFlux(i);
+				if(i >= halfBin && i < size - halfBin)	{
+					sum += getFlux(i + halfBin);
+					flux = sum / binSize;
+					sum -= getFlux(i - halfBin);
+				}
+				smooth.add(new DataPoint(getTime(i), flux, getWeight(i)));
+			}
+			return smooth;
+		}
+
+		/**
+		 * @return a Lightcurve of every sample in the snapshot
+		 */
+		public Lightcurve toLightcurve()	{
+			return toLightcurve(0, size - 1);
+		}
+
+		/**
+		 * @param first is the index of the first sample to copy
+		 * @param last is the index of the last sample to copy
+		 * @return a Lightcurve of the samples from first to last
+		 */
+		private Lightcurve toLightcurve(int first, int last)	{
+			Lightcurve l = new Lightcurve();
+			for(int i = first; i <= last; i++)
+				l.add(new DataPoint(getTime(i), getFlux(i), getWeight(i)));
+			return l;
+		}
+
+		/**
+		 * Binary search for the first sample at or after a time
+		 * @param time is the time to search for
+		 * @return the index of the first sample with a time >= time, or size if there is none
+		 */
+		private int firstIndexAtOrAfter(double time)	{
+			int low = 0;
+			int high = size;
+			while(low < high)	{
+				int mid = (low + high) >>> 1;
+				if(getTime(mid) < time)
+					low = mid + 1;
+				else
+					high = mid;
+			}
+			return low;
+		}
+
+		/**
+		 * Make sure an index is valid
+		 * @param index is the index of a sample
+		 */
+		private void checkIndex(int index)	{
+			if(index < 0 || index >= size)
+				throw new IndexOutOfBoundsException("Index " + index + " is out of range for a snapshot of " + size + " samples.");
+		}
+	}
+}
@@ -0,0 +1,105 @@
+/**
+ * Contention benchmark for ConcurrentLightcurve: one writer appends samples while N readers
+ * repeatedly take the average flux of the latest 1000 samples.  The same load is run against a
+ * Lightcurve guarded by a lock, for comparison.
+ * Arguments, all optional:  samples (2000000)  reader counts (1 2 4 8)
+ *
+ */
+
+//import statements:
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class ConcurrentLightcurveBenchmark {
+
+	private static final double KEPLER_dT = 58.84876;
+	private static final int WINDOW = 1000;
+
+	/**
+	 * @param args is the optional arguments listed above
+	 */
+	public static void main(String[] args) throws InterruptedException	{
+		int samples = args.length > 0 ? Integer.parseInt(args[0]) : 2000000;
+		int[] readerCounts = {1, 2, 4, 8};
+		if(args.length > 1)	{
+			readerCounts = new int[args.length - 1];
+			for(int i = 1; i < args.length; i++)
+				readerCounts[i - 1] = Integer.parseInt(args[i]);
+		}
+
+		System.out.println("Samples: " + samples + ", each read averages the latest " + WINDOW);
+		System.out.println("readers\tmode\twriter appends/s\treads/s");
+		for(int readers : readerCounts)	{
+			run(samples, readers, false);
+			run(samples, readers, true);
+		}
+	}
+
+	/**
+	 * Run one writer and some readers until the writer is done, then print the rates
+	 * @param samples is the number of samples to append
+	 * @param readers is the number of reader threads
+	 * @param locked is true to use a locked Lightcurve instead of a ConcurrentLightcurve
+	 */
+	private static void run(final int samples, int readers, final boolean locked) throws InterruptedException	{
+		final ConcurrentLightcurve concurrent = new ConcurrentLightcurve();
+		final Lightcurve plain = new Lightcurve();
+		final Object lock = new Object();
+		final AtomicBoolean done = new AtomicBoolean(false);
+		final AtomicLong reads = new AtomicLong(0);
+		final double[] sink = new double[readers];
+
+		Thread[] readerThreads = new Thread[readers];
+		for(int r = 0; r < readers; r++)	{
+			final int id = r;
+			readerThreads[r] = new Thread(() ->	{
+				long count = 0;
+				double total = 0;
+				while(!done.get())	{
+					if(locked)	{
+						synchronized(lock)	{
+							int n = plain.size();
+							double fluxSum = 0;
+							for(int i = Math.max(0, n - WINDOW); i < n; i++)
+								fluxSum += plain.get(i).getFlux();
+							total += fluxSum;
+						}
+					}
+					else	{
+						ConcurrentLightcurve.Snapshot s = concurrent.snapshot();
+						int n = s.size();
+						double fluxSum = 0;
+						for(int i = Math.max(0, n - WINDOW); i < n; i++)
+							fluxSum += s.getFlux(i);
+						total += fluxSum;
+					}
+					count++;
+				}
+				reads.addAndGet(count);
+				sink[id] = total;
+			});
+			readerThreads[r].start();
+		}
+
+		long start = System.nanoTime();
+		for(int i = 0; i < samples; i++)	{
+			double time = i * KEPLER_dT;
+			double flux = 1 + 0.001 * (i % 100);
+			if(locked)	{
+				synchronized(lock)	{
+					plain.add(new DataPoint(time, flux, 1));
+				}
+			}
+			else	{
+				concurrent.append(time, flux, 1);
+			}
+		}
+		double seconds = (System.nanoTime() - start) / 1.0E9;
+		done.set(true);
+		for(Thread t : readerThreads)
+			t.join();
+
+		System.out.println(readers + "\t" + (locked ? "locked" : "lock-free") + "\t"
+				+ Math.round(samples / seconds) + "\t" + Math.round(reads.get() / seconds));
+	}
+}
@@ -0,0 +1,297 @@
+/**
+ * Autocorrelation and cross-correlation of Lightcurves by FFT, in O(n log n) rather than O(n^2).
+ * <p>
+ * Each Lightcurve is first resampled onto a uniform grid with the given spacing: a grid cell takes
+ * the weighted average flux of the points that fall in it, and cells with no points (gaps, such as
+ * quarter rolls) are masked out and set to zero.  The series is zero-padded to a power of two at
+ * least as long as both series together, so the FFT correlation has no wrap-around.  The correlation
+ * of the masks is taken alongside that of the data, so every lag is normalized by the number of
+ * valid pairs that actually overlap at that lag.
+ * <p>
+ * The results are Lightcurves with the lag in place of the time, the correlation coefficient in place
+ * of the flux, and the number of overlapping cells in place of the weight.  Lags with no overlap are
+ * left out.  crossCorrelateAll correlates many events against one template across threads, taking
+ * the spectrum of the template only once per padded length, and giving each thread its own
+ * reusable scratch arrays.  The FFT plans are shared, see RealFFT.
+ *
+ */
+
+//import statements:
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+public class Correlator {
+	//instance variables
+	private double dt;
+	private int threads;
+
+	/**
+	 * Create a Correlator
+	 * @param sampling is the spacing of the uniform grid the Lightcurves are resampled onto,
+	 * usually the cadence
+	 */
+	public Correlator(double sampling)	{
+		if(!(sampling > 0))
+			throw new IllegalArgumentException("The sampling must be greater than zero.");
+		dt = sampling;
+		threads = Runtime.getRuntime().availableProcessors();
+	}
+
+	/**
+	 * @param n is the number of threads crossCorrelateAll shares the events between
+	 */
+	public void setThreads(int n)	{
+		if(n < 1)
+			throw new IllegalArgumentException("There must be at least one thread.");
+		threads = n;
+	}
+
+	/**
+	 * Autocorrelation of a Lightcurve, for lags from 0 to maxLag grid cells
+	 * @param l is the Lightcurve
+	 * @param maxLag is the largest lag, in grid cells
+	 * @return the autocorrelation, with the lag in time units in place of the time
+	 */
+	public Lightcurve autocorrelation(Lightcurve l, int maxLag)	{
+		Series s = new Series(l, dt);
+		RealFFT plan = RealFFT.plan(paddedLength(s.length, s.length));
+		Workspace w = new Workspace(plan.size());
+		Spectrum spectrum = new Spectrum(s, plan);
+		return correlate(spectrum, spectrum, plan, w, 0, maxLag);
+	}
+
+	/**
+	 * Cross-correlation of two Lightcurves, sum of a(t) b(t + lag), for lags from -maxLag to maxLag
+	 * grid cells.  The lag is in time units and includes the offset between the starts of a and b.
+	 * @param a is the first Lightcurve
+	 * @param b is the second Lightcurve
+	 * @param maxLag is the largest lag either way, in grid cells
+	 * @return the cross-correlation, with the lag in place of the time
+	 */
+	public Lightcurve crossCorrelation(Lightcurve a, Lightcurve b, int maxLag)	{
+		Series sa = new Series(a, dt);
+		Series sb = new Series(b, dt);
+		RealFFT plan = RealFFT.plan(paddedLength(sa.length, sb.length));
+		Workspace w = new Workspace(plan.size());
+		return correlate(new Spectrum(sa, plan), new Spectrum(sb, plan), plan, w, -maxLag, maxLag);
+	}
+
+	/**
+	 * Cross-correlate a template, such as a meanEventProfile result, against many events across threads
+	 * @param template is the first Lightcurve of every correlation
+	 * @param events is the Lightcurves to correlate against the template
+	 * @param maxLag is the largest lag either way, in grid cells
+	 * @return the cross-correlation of the template with each event, in the same order as events
+	 */
+	public Lightcurve[] crossCorrelateAll(Lightcurve template, final Lightcurve[] events, final int maxLag)	{
+		final Series t = new Series(template, dt);
+		final ConcurrentHashMap<Integer, Spectrum> templateSpectra = new ConcurrentHashMap<Integer, Spectrum>();
+		final Lightcurve[] results = new Lightcurve[events.length];
+		final AtomicInteger next = new AtomicInteger(0);
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		ArrayList<Future<?>> workers = new ArrayList<Future<?>>();
+		for(int k = 0; k < threads; k++)	{
+			workers.add(pool.submit(() ->	{
+				//scratch arrays, reused while the padded length stays the same
+				Workspace w = null;
+				int e;
+				while((e = next.getAndIncrement()) < events.length)	{
+					Series s = new Series(events[e], dt);
+					final RealFFT plan = RealFFT.plan(paddedLength(t.length, s.length));
+					if(w == null || w.length != plan.size())
+						w = new Workspace(plan.size());
+					Spectrum ts = templateSpectra.computeIfAbsent(plan.size(), n -> new Spectrum(t, plan));
+					w.spectrum.set(s, plan, w.padded);
+					results[e] = correlate(ts, w.spectrum, plan, w, -maxLag, maxLag);
+				}
+			}));
+		}
+
+		try	{
+			for(Future<?> f : workers)
+				f.get();
+		}
+		catch(InterruptedException ex)	{
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("The correlation was interrupted.", ex);
+		}
+		catch(ExecutionException ex)	{
+			throw new IllegalStateException("The correlation failed.", ex.getCause());
+		}
+		finally	{
+			pool.shutdown();
+		}
+		return results;
+	}
+
+	/**
+	 * Correlate two spectra of the same padded length
+	 * @param a is the spectrum of the first series
+	 * @param b is the spectrum of the second series
+	 * @param plan is the FFT plan for the padded length
+	 * @param w is scratch space for the padded length
+	 * @param minLag is the smallest lag to keep, in grid cells
+	 * @param maxLag is the largest lag to keep, in grid cells
+	 * @return the correlation coefficient at each lag with any overlap, no further than the series
+	 * can overlap
+	 */
+	private Lightcurve correlate(Spectrum a, Spectrum b, RealFFT plan, Workspace w, int minLag, int maxLag)	{
+		int n = plan.size();
+		//sum of a[i] b[i + k] is the inverse transform of conj(A) B
+		multiplyConjugate(a.dataRe, a.dataIm, b.dataRe, b.dataIm, w.re, w.im);
+		plan.inverse(w.re, w.im, w.data);
+		multiplyConjugate(a.maskRe, a.maskIm, b.maskRe, b.maskIm, w.re, w.im);
+		plan.inverse(w.re, w.im, w.mask);
+
+		Lightcurve result = new Lightcurve();
+		double norm = Math.sqrt(a.series.variance * b.series.variance);
+		double offset = b.series.start - a.series.start;
+		//the padding keeps only the lags where the series can overlap free of wrap-around
+		minLag = Math.max(minLag, -(a.series.length - 1));
+		maxLag = Math.min(maxLag, b.series.length - 1);
+		for(int k = minLag; k <= maxLag; k++)	{
+			int i = k < 0 ? k + n : k;
+			long overlap = Math.round(w.mask[i]);
+			if(overlap < 1)
+				continue;
+			result.add(new DataPoint(offset + k * dt, w.data[i] / (overlap * norm), overlap));
+		}
+		return result;
+	}
+
+	/**
+	 * out = conj(a) * b, for half spectra
+	 */
+	private static void multiplyConjugate(double[] ar, double[] ai, double[] br, double[] bi, double[] outRe, double[] outIm)	{
+		for(int k = 0; k < ar.length; k++)	{
+			outRe[k] = ar[k] * br[k] + ai[k] * bi[k];
+			outIm[k] = ar[k] * bi[k] - ai[k] * br[k];
+		}
+	}
+
+	/**
+	 * @return the smallest power of two, at least 4, that holds two series without wrap-around
+	 */
+	private static int paddedLength(int lengthA, int lengthB)	{
+		int needed = Math.max(lengthA + lengthB, 4);
+		int n = Integer.highestOneBit(needed);
+		if(n < needed)
+			n <<= 1;
+		return n;
+	}
+
+	/**
+	 * A Lightcurve resampled onto a uniform grid, with the mean taken out of the valid cells
+	 * and the gaps masked to zero
+	 */
+	private static class Series	{
+		private double start;
+		private int length;
+		private double[] values;
+		private double[] mask;
+		private double variance;
+
+		private Series(Lightcurve l, double dt)	{
+			if(l.size() == 0)
+				throw new IllegalArgumentException("Cannot correlate an empty Lightcurve.");
+			start = l.get(0).getTime();
+			length = (int) Math.round((l.get(l.size() - 1).getTime() - start) / dt) + 1;
+			values = new double[length];
+			mask = new double[length];
+			double[] weights = new double[length];
+
+			for(int i = 0; i < l.size(); i++)	{
+				DataPoint d = l.get(i);
+				int cell = (int) Math.round((d.getTime() - start) / dt);
+				values[cell] += d.getWeight() * d.getFlux();
+				weights[cell] += d.getWeight();
+			}
+
+			int count = 0;
+			double sum = 0;
+			for(int i = 0; i < length; i++)	{
+				if(weights[i] > 0)	{
+					values[i] /= weights[i];
+					mask[i] = 1;
+					sum += values[i];
+					count++;
+				}
+			}
+			double mean = sum / count;
+			double squares = 0;
+			for(int i = 0; i < length; i++)	{
+				if(mask[i] > 0)	{
+					values[i] -= mean;
+					squares += values[i] * values[i];
+				}
+			}
+			variance = squares / count;
+		}
+	}
+
+	/**
+	 * The half spectra of the data and the mask of a Series, at one padded length
+	 */
+	private static class Spectrum	{
+		private Series series;
+		private double[] dataRe;
+		private double[] dataIm;
+		private double[] maskRe;
+		private double[] maskIm;
+
+		private Spectrum(int n)	{
+			dataRe = new double[n / 2 + 1];
+			dataIm = new double[n / 2 + 1];
+			maskRe = new double[n / 2 + 1];
+			maskIm = new double[n / 2 + 1];
+		}
+
+		private Spectrum(Series s, RealFFT plan)	{
+			this(plan.size());
+			set(s, plan, new double[plan.size()]);
+		}
+
+		/**
+		 * Take the spectra of a Series, replacing whatever was held before
+		 * @param padded is scratch space of the padded length
+		 */
+		private void set(Series s, RealFFT plan, double[] padded)	{
+			series = s;
+			Arrays.fill(padded, 0);
+			System.arraycopy(s.values, 0, padded, 0, s.length);
+			plan.forward(padded, dataRe, dataIm);
+			System.arraycopy(s.mask, 0, padded, 0, s.length);
+			plan.forward(padded, maskRe, maskIm);
+		}
+	}
+
+	/**
+	 * Scratch arrays for one padded length, owned by one thread
+	 */
+	private static class Workspace	{
+		private int length;
+		private double[] re;
+		private double[] im;
+		private double[] data;
+		private double[] mask;
+		private double[] padded;
+		private Spectrum spectrum;
+
+		private Workspace(int n)	{
+			length = n;
+			re = new double[n / 2 + 1];
+			im = new double[n / 2 + 1];
+			data = new double[n];
+			mask = new double[n];
+			padded = new double[n];
+			spectrum = new Spectrum(n);
+		}
+	}
+}
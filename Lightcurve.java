@@ -15,11 +15,18 @@ import java.io.FileWriter;
 import java.io.BufferedWriter;
 import java.math.BigDecimal;
 import java.math.RoundingMode;
+import java.util.function.Function;
+import java.util.function.IntToDoubleFunction;
+import java.util.stream.IntStream;
 
 
 public class Lightcurve {
 	//instance variables
 	private ArrayList<DataPoint> data;
+	private SegmentIndex segments;
+	
+	//a gap longer than this many cadences starts a new segment
+	private static final double GAP_CADENCES = 1.5;
 	
 	/**
 	 * Zero argument constructor to create an empty Lightcurve
@@ -107,15 +114,27 @@ public class Lightcurve {
 		int fin = indices[1];
 		for(int i = indices[0]; i <= fin; i++)
 			subCurve.add(data.get(i));
+		subCurve.inheritSegments(this);
 		return subCurve;
 	}
 	
 	/**
-	 * Add a DataPoint to the end of the Lightcurve
+	 * Get a DataPoint.  The point is not a copy, and changing its flux or weight leaves the statistics
+	 * of the segment index out of date until segment is called again.
+	 * @param index is the index of a DataPoint in the Lightcurve
+	 * @return the DataPoint at that index
+	 */
+	public DataPoint get(int index)	{
+		return data.get(index);
+	}
+	
+	/**
+	 * Add a DataPoint to the end of the Lightcurve.  This discards the segment index, if any.
 	 * @param p is a DataPoint to be added to the end of the Lightcurve
 	 */
 	public void add(DataPoint p)	{
 		data.add(p);
+		segments = null;
 	}
 	
 	/**
@@ -129,12 +148,13 @@ public class Lightcurve {
 			result.add(this.data.get(i));
 		for(int i = 0; i < l.data.size(); i++)
 			result.add(l.data.get(i));
+		result.inheritSegments(this);
 		return result;
 	}
 	
 	/**
 	 * Remove sections of the Lightcurve based on their times.  Points removed
-	 * are all points >= startTime and <= endTime
+	 * are all points >= startTime and <= endTime.  This discards the segment index, if any.
 	 * @param startTime is the time of the first point to be removed
 	 * @param endTime is the time of the last point to be removed
 	 */
@@ -154,6 +174,7 @@ public class Lightcurve {
 			data.remove(i); 
 			fin--;
 		}
+		segments = null;
 	}
 
 	/**
@@ -165,7 +186,8 @@ public class Lightcurve {
 	}
 	
 	/**
-	 * Generate a normalized Lightcurve using the given limits as the parameters
+	 * Generate a normalized Lightcurve using the given limits as the parameters.
+	 * The result is not segmented, as the times no longer match the gap threshold.
 	 * @param lowLimit is the lower bound of normalization
 	 * @param highLimit is the upper bound of normalization
 	 * @return a normalized Lightcurve
@@ -173,36 +195,13 @@ public class Lightcurve {
 	public Lightcurve normalizeTime(double lowLimit, double highLimit)	{
 		Lightcurve normal = deepCopy(this);
 		
-		//initialize BigDecimal objects for limits for precision of arithmetic
-		BigDecimal lowerBound = new BigDecimal(lowLimit);
-		BigDecimal upperBound = new BigDecimal(highLimit);
-		
-		//Check for special cases in BigDecimal world
-		if(lowLimit == 0)
-			lowerBound = BigDecimal.ZERO;
-		else if(lowLimit == 1)
-			lowerBound = BigDecimal.ONE;
-		else if(lowLimit == 10)
-			lowerBound = BigDecimal.TEN;
-		if(highLimit == 0)
-			upperBound = BigDecimal.ZERO;
-		else if(highLimit == 1)
-			upperBound = BigDecimal.ONE;
-		else if(highLimit == 10)
-			upperBound = BigDecimal.TEN;
-		
-		//store some numbers to make math more efficient
-		BigDecimal min = new BigDecimal(normal.data.get(0).getTime()).setScale(10, RoundingMode.CEILING);
-		BigDecimal max = new BigDecimal(normal.data.get(data.size()-1).getTime()).setScale(10, RoundingMode.CEILING);
-		BigDecimal timeDiff = max.subtract(min).setScale(10, RoundingMode.CEILING);
-		BigDecimal limitDiff = upperBound.subtract(lowerBound).setScale(10, RoundingMode.CEILING);
-		BigDecimal division = limitDiff.divide(timeDiff, 10, RoundingMode.CEILING);
+		BigDecimal[] scale = normalization(lowLimit, highLimit, normal.data.get(0).getTime(), normal.data.get(data.size()-1).getTime());
 		int size = data.size();
 		
-		for(int i = 0; i < size; i++)	{
-			BigDecimal element = new BigDecimal(normal.data.get(i).getTime()).setScale(10, RoundingMode.CEILING);
-			normal.data.get(i).changeTime((lowerBound.add(element.subtract(min)).multiply(division)).setScale(10, RoundingMode.FLOOR).doubleValue());
-		}
+		for(int i = 0; i < size; i++)
+			normal.data.get(i).changeTime(normalize(normal.data.get(i).getTime(), scale));
+		//the gap threshold is in the old time units, so the segment index no longer applies
+		normal.segments = null;
 		
 		return normal;
 	}
@@ -224,36 +223,12 @@ public class Lightcurve {
 	public Lightcurve normalizeFlux(double lowLimit, double highLimit)	{
 		Lightcurve normal = deepCopy(this);
 		
-		//initialize BigDecimal objects for limits for precision of arithmetic
-		BigDecimal lowerBound = new BigDecimal(lowLimit);
-		BigDecimal upperBound = new BigDecimal(highLimit);
-		
-		//Check for special cases in BigDecimal world
-		if(lowLimit == 0)
-			lowerBound = BigDecimal.ZERO;
-		else if(lowLimit == 1)
-			lowerBound = BigDecimal.ONE;
-		else if(lowLimit == 10)
-			lowerBound = BigDecimal.TEN;
-		if(highLimit == 0)
-			upperBound = BigDecimal.ZERO;
-		else if(highLimit == 1)
-			upperBound = BigDecimal.ONE;
-		else if(highLimit == 10)
-			upperBound = BigDecimal.TEN;
-		
-		//store some numbers to make math more efficient
-		BigDecimal min = new BigDecimal(normal.getMinFlux()).setScale(10, RoundingMode.CEILING);
-		BigDecimal max = new BigDecimal(normal.getMaxFlux()).setScale(10, RoundingMode.CEILING);
-		BigDecimal fluxDiff = max.subtract(min).setScale(10, RoundingMode.CEILING);
-		BigDecimal limitDiff = upperBound.subtract(lowerBound).setScale(10, RoundingMode.CEILING);
-		BigDecimal division = limitDiff.divide(fluxDiff, 10, RoundingMode.CEILING);
+		BigDecimal[] scale = normalization(lowLimit, highLimit, normal.getMinFlux(), normal.getMaxFlux());
 		int size = data.size();
 		
-		for(int i = 0; i < size; i++)	{
-			BigDecimal element = new BigDecimal(normal.data.get(i).getFlux()).setScale(10, RoundingMode.CEILING);
-			normal.data.get(i).changeFlux((lowerBound.add(element.subtract(min)).multiply(division)).setScale(10, RoundingMode.FLOOR).doubleValue());
-		}
+		for(int i = 0; i < size; i++)
+			normal.data.get(i).changeFlux(normalize(normal.data.get(i).getFlux(), scale));
+		normal.inheritSegments(this);
 			
 		return normal;
 	}
@@ -269,6 +244,8 @@ public class Lightcurve {
 	/**
 	 * Method to return a boxcar smoothed version of the current Lightcurve, where the boxcar is
 	 * defined as 1/2 binSize behind the current point to 1/2 binSize ahead of the current point.
+	 * If the Lightcurve is segmented, the boxcar never crosses a segment boundary: the points within
+	 * 1/2 binSize of either end of a segment are left as they are, and the segments are smoothed in parallel.
 	 * @param binSize is the number of points to include in the boxcar.  If the binSize is even, it will
 	 * be increased by 1.
 	 * @return a Lightcurve that is a boxcar smoothed version of the current Lightcurve
@@ -278,28 +255,256 @@ public class Lightcurve {
 		if(binSize % 2 != 1)
 			binSize += 1;
 		
-		Lightcurve smooth = deepCopy(this);
+		final Lightcurve smooth = deepCopy(this);
 		
 		//the below integers are save for efficiency-sake
+		final int halfBin = binSize / 2;
+		final int[] ranges = segmentRanges();
+		
+		IntStream.range(0, ranges.length / 2).parallel().forEach(r ->	{
+			int end = ranges[2 * r + 1] - halfBin;
+			for(int i = ranges[2 * r] + halfBin; i <= end; i++)	{
+				//assign new point
+				double avg = windowAverage(j -> data.get(j).getFlux(), i - halfBin, i + halfBin);
+				smooth.data.get(i).changeFlux(avg);
+			}
+		});
+		smooth.inheritSegments(this);
+		
+		return smooth;
+	}
+	
+	/**
+	 * Inverse-variance weighted version of boxcarSmooth, using the weight of each DataPoint as 1/sigma^2.
+	 * The window sums of w, w*f and w^2 are slid along the curve, so the mean, its propagated error
+	 * and the effective sample count all come out of the same single pass.  As in boxcarSmooth, the
+	 * first and last 1/2 binSize points of the curve, or of each segment if it is segmented, are left unsmoothed.
+	 * @param binSize is the number of points to include in the boxcar.  If the binSize is even, it will
+	 * be increased by 1.
+	 * @return a PropagatedLightcurve whose point weights are the inverse variance of the smoothed flux
+	 */
+	public PropagatedLightcurve weightedBoxcarSmooth(int binSize)	{
+		//ensure binSize is odd, and correct accordingly
+		if(binSize % 2 != 1)
+			binSize += 1;
+		
+		int size = data.size();
 		int halfBin = binSize / 2;
-		int end = smooth.size() - halfBin;
+		Lightcurve smooth = new Lightcurve();
+		double[] errors = new double[size];
+		double[] counts = new double[size];
+		int[] ranges = segmentRanges();
 		
-		for(int i = halfBin; i < end; i++)	{
-			BigDecimal sum = new BigDecimal(data.get(i - halfBin).getFlux()).setScale(10, BigDecimal.ROUND_CEILING);
-			int fin = i + halfBin;	//for efficiency
-			for(int j = i - halfBin + 1; j <= fin; j++)	{
-				BigDecimal toAdd = new BigDecimal(data.get(j).getFlux()).setScale(10, BigDecimal.ROUND_CEILING);
-				sum = sum.add(toAdd);
-				
+		for(int r = 0; r < ranges.length; r += 2)	{
+			int first = ranges[r];
+			int last = ranges[r + 1];
+			
+			//running sums over the current window
+			double wSum = 0;
+			double wfSum = 0;
+			double w2Sum = 0;
+			for(int j = first; j < first + binSize - 1 && j <= last; j++)	{
+				double w = data.get(j).getWeight();
+				wSum += w;
+				wfSum += w * data.get(j).getFlux();
+				w2Sum += w * w;
 			}
-			BigDecimal binSizeBD = new BigDecimal(binSize).setScale(10, BigDecimal.ROUND_CEILING);
-			BigDecimal avg = sum.divide(binSizeBD, 10, RoundingMode.CEILING);
 			
-			//assign new point
-			smooth.data.get(i).changeFlux(avg.doubleValue());
+			for(int i = first; i <= last; i++)	{
+				DataPoint d = data.get(i);
+				if(i < first + halfBin || i > last - halfBin)	{
+					//edges are left as they are, as in boxcarSmooth
+					smooth.data.add(d.deepCopy());
+					errors[i] = 1.0 / Math.sqrt(d.getWeight());
+					counts[i] = d.getWeight() > 0 ? 1 : 0;
+				}
+				else	{
+					//slide the leading edge of the window in
+					DataPoint in = data.get(i + halfBin);
+					double w = in.getWeight();
+					wSum += w;
+					wfSum += w * in.getFlux();
+					w2Sum += w * w;
+					
+					smooth.data.add(new DataPoint(d.getTime(), wfSum / wSum, wSum));
+					errors[i] = 1.0 / Math.sqrt(wSum);
+					counts[i] = (wSum * wSum) / w2Sum;
+					
+					//slide the trailing edge of the window out
+					DataPoint out = data.get(i - halfBin);
+					w = out.getWeight();
+					wSum -= w;
+					wfSum -= w * out.getFlux();
+					w2Sum -= w * w;
+				}
+			}
 		}
+		smooth.inheritSegments(this);
 		
-		return smooth;
+		return new PropagatedLightcurve(smooth, errors, counts);
+	}
+	
+	/**
+	 * Rebin the Lightcurve into bins of the given width in time.  Each new point is at the mean time of
+	 * the points in its bin, with their weighted average flux and the sum of their weights.  Empty bins
+	 * are left out, and if the Lightcurve is segmented the bins restart at each segment, so no bin
+	 * straddles a gap.  The bins of each segment make up one segment of the result.
+	 * @param binWidth is the width of each bin, in the same units as the time
+	 * @return the rebinned Lightcurve
+	 */
+	public Lightcurve rebin(double binWidth)	{
+		if(!(binWidth > 0))
+			throw new IllegalArgumentException("The bin width must be greater than zero.");
+		
+		Lightcurve binned = new Lightcurve();
+		int[] ranges = segmentRanges();
+		int[] pieces = new int[ranges.length / 2];
+		for(int r = 0; r < ranges.length; r += 2)	{
+			pieces[r / 2] = binned.data.size();
+			double binStart = data.get(ranges[r]).getTime();
+			double timeSum = 0;
+			double wSum = 0;
+			double wfSum = 0;
+			int count = 0;
+			for(int i = ranges[r]; i <= ranges[r + 1]; i++)	{
+				DataPoint d = data.get(i);
+				if(d.getTime() >= binStart + binWidth)	{
+					//close the current bin and move to the one holding this point
+					if(count > 0)
+						binned.data.add(new DataPoint(timeSum / count, wfSum / wSum, wSum));
+					binStart += Math.floor((d.getTime() - binStart) / binWidth) * binWidth;
+					timeSum = 0;
+					wSum = 0;
+					wfSum = 0;
+					count = 0;
+				}
+				timeSum += d.getTime();
+				wSum += d.getWeight();
+				wfSum += d.getWeight() * d.getFlux();
+				count++;
+			}
+			if(count > 0)
+				binned.data.add(new DataPoint(timeSum / count, wfSum / wSum, wSum));
+		}
+		binned.indexPieces(this, pieces);
+		
+		return binned;
+	}
+	
+	/**
+	 * Detrend the Lightcurve by dividing the flux of each segment by the weighted average flux of
+	 * that segment, which removes the level changes between Kepler quarters.  An unsegmented
+	 * Lightcurve is treated as a single segment.
+	 * @return the detrended Lightcurve
+	 */
+	public Lightcurve detrend()	{
+		Lightcurve flat = deepCopy(this);
+		int[] ranges = segmentRanges();
+		for(int r = 0; r < ranges.length; r += 2)	{
+			//take the level from the points themselves, in case they changed since the index was built
+			double wSum = 0;
+			double wfSum = 0;
+			for(int i = ranges[r]; i <= ranges[r + 1]; i++)	{
+				DataPoint d = data.get(i);
+				wSum += d.getWeight();
+				wfSum += d.getWeight() * d.getFlux();
+			}
+			double level = wfSum / wSum;
+			for(int i = ranges[r]; i <= ranges[r + 1]; i++)	{
+				DataPoint d = flat.data.get(i);
+				d.changeFlux(d.getFlux() / level);
+			}
+		}
+		flat.inheritSegments(this);
+		
+		return flat;
+	}
+	
+	/**
+	 * Start a lazy chain of operations on this Lightcurve.  For example
+	 * l.lazy().subsection(a, b).normalizeFlux().boxcarSmooth(15).collect() gives the same result as
+	 * l.subsection(a, b).normalizeFlux().boxcarSmooth(15), without copying the curve at every step.
+	 * @return an empty LightcurvePlan over this Lightcurve
+	 */
+	public LightcurvePlan lazy()	{
+		return new LightcurvePlan(this);
+	}
+	
+	/**
+	 * Store this Lightcurve in compact form, with float flux and weight and float time offsets
+	 * @param cadence is the expected time between consecutive points
+	 * @return a CompactLightcurve of the same data
+	 */
+	public CompactLightcurve toCompact(double cadence)	{
+		return new CompactLightcurve(this, cadence);
+	}
+	
+	/**
+	 * Build the segment index of this Lightcurve.  Once built, smoothing, rebinning, detrending and
+	 * event stacking all stay within segments.  Lightcurves derived from this one with the same
+	 * times are indexed with the same gap threshold, and rebinned ones keep one segment for each
+	 * segment of this one.
+	 * @param gapThreshold is the largest time step allowed within a segment
+	 * @return the segment index
+	 */
+	public SegmentIndex segment(double gapThreshold)	{
+		segments = new SegmentIndex(this, gapThreshold);
+		return segments;
+	}
+	
+	/**
+	 * Build the segment index of this Lightcurve from its cadence, starting a new segment
+	 * wherever a time step is longer than 1.5 cadences.
+	 * @param cadence is the time between consecutive points
+	 * @return the segment index
+	 */
+	public SegmentIndex segmentByCadence(double cadence)	{
+		return segment(cadence * GAP_CADENCES);
+	}
+	
+	/**
+	 * @return the segment index of this Lightcurve, or null if it has not been segmented
+	 */
+	public SegmentIndex getSegments()	{
+		return segments;
+	}
+	
+	/**
+	 * @param s is the number of a segment
+	 * @return a Lightcurve of the points in that segment
+	 */
+	public Lightcurve getSegment(int s)	{
+		if(segments == null)
+			throw new IllegalStateException("The Lightcurve has not been segmented.");
+		Lightcurve part = new Lightcurve();
+		int end = segments.getEnd(s);
+		for(int i = segments.getStart(s); i <= end; i++)
+			part.data.add(data.get(i));
+		part.segments = new SegmentIndex(part, segments.getGapThreshold());
+		return part;
+	}
+	
+	/**
+	 * Apply an operation to every segment independently and in parallel, then join the results in order.
+	 * The result of each segment makes up one segment of the joined Lightcurve, even if op changes
+	 * the sampling.
+	 * @param op is the operation to apply to the Lightcurve of each segment
+	 * @return the joined results
+	 */
+	public Lightcurve mapSegments(Function<Lightcurve, Lightcurve> op)	{
+		if(segments == null)
+			throw new IllegalStateException("The Lightcurve has not been segmented.");
+		Lightcurve[] parts = new Lightcurve[segments.size()];
+		IntStream.range(0, parts.length).parallel().forEach(s -> parts[s] = op.apply(getSegment(s)));
+		
+		Lightcurve result = new Lightcurve();
+		int[] pieces = new int[parts.length];
+		for(int s = 0; s < parts.length; s++)	{
+			pieces[s] = result.data.size();
+			result.data.addAll(parts[s].data);
+		}
+		result.indexPieces(this, pieces);
+		return result;
 	}
 	
 	
@@ -308,14 +513,14 @@ public class Lightcurve {
 	 * @return the value of the maximum flux in the Lightcurve
 	 */
 	public double getMaxFlux()	{
-		BigDecimal maximum = new BigDecimal(data.get(0).getFlux()).setScale(11, RoundingMode.FLOOR);
+		double maximum = roundFlux(data.get(0).getFlux(), RoundingMode.FLOOR);
 		int size = data.size();
 		for(int i = 1; i < size; i++)	{
-			if(data.get(i).getFlux() > maximum.doubleValue())
-				maximum = new BigDecimal(data.get(i).getFlux()).setScale(11, RoundingMode.FLOOR);
+			if(data.get(i).getFlux() > maximum)
+				maximum = roundFlux(data.get(i).getFlux(), RoundingMode.FLOOR);
 		}
 		
-		return maximum.doubleValue();
+		return maximum;
 	}
 	
 	/**
@@ -333,13 +538,13 @@ public class Lightcurve {
 	 * @return the value of the minimum flux in the Lightcurve
 	 */
 	public double getMinFlux()	{
-		BigDecimal minimum = new BigDecimal(data.get(0).getFlux()).setScale(11, RoundingMode.CEILING);
+		double minimum = roundFlux(data.get(0).getFlux(), RoundingMode.CEILING);
 		int size = data.size();
 		for(int i = 1; i < size; i++)	{
-			if(data.get(i).getFlux() < minimum.doubleValue())
-				minimum = new BigDecimal(data.get(i).getFlux()).setScale(11, RoundingMode.CEILING);
+			if(data.get(i).getFlux() < minimum)
+				minimum = roundFlux(data.get(i).getFlux(), RoundingMode.CEILING);
 		}
-		return minimum.doubleValue();
+		return minimum;
 	}
 	
 	/**
@@ -363,9 +568,137 @@ public class Lightcurve {
 		Lightcurve copy = new Lightcurve();
 		for(int i = 0; i < curve.size(); i++)
 			copy.add(curve.data.get(i).deepCopy());
+		copy.inheritSegments(curve);
 		return copy;
 	}
 	
+	/**
+	 * Work out the BigDecimal constants for a normalization, shared by normalizeTime, normalizeFlux
+	 * and LightcurvePlan so that all of them do exactly the same arithmetic
+	 * @param lowLimit is the lower bound of normalization
+	 * @param highLimit is the upper bound of normalization
+	 * @param minValue is the value that maps to lowLimit
+	 * @param maxValue is the value that maps to highLimit
+	 * @return {lower bound, minimum, scale factor}, to be passed to normalize
+	 */
+	static BigDecimal[] normalization(double lowLimit, double highLimit, double minValue, double maxValue)	{
+		//initialize BigDecimal objects for limits for precision of arithmetic
+		BigDecimal lowerBound = new BigDecimal(lowLimit);
+		BigDecimal upperBound = new BigDecimal(highLimit);
+		
+		//Check for special cases in BigDecimal world
+		if(lowLimit == 0)
+			lowerBound = BigDecimal.ZERO;
+		else if(lowLimit == 1)
+			lowerBound = BigDecimal.ONE;
+		else if(lowLimit == 10)
+			lowerBound = BigDecimal.TEN;
+		if(highLimit == 0)
+			upperBound = BigDecimal.ZERO;
+		else if(highLimit == 1)
+			upperBound = BigDecimal.ONE;
+		else if(highLimit == 10)
+			upperBound = BigDecimal.TEN;
+		
+		//store some numbers to make math more efficient
+		BigDecimal min = new BigDecimal(minValue).setScale(10, RoundingMode.CEILING);
+		BigDecimal max = new BigDecimal(maxValue).setScale(10, RoundingMode.CEILING);
+		BigDecimal valueDiff = max.subtract(min).setScale(10, RoundingMode.CEILING);
+		BigDecimal limitDiff = upperBound.subtract(lowerBound).setScale(10, RoundingMode.CEILING);
+		BigDecimal division = limitDiff.divide(valueDiff, 10, RoundingMode.CEILING);
+		
+		return new BigDecimal[] {lowerBound, min, division};
+	}
+	
+	/**
+	 * Normalize a single value
+	 * @param value is the time or flux to normalize
+	 * @param scale is the result of normalization
+	 * @return the normalized value
+	 */
+	static double normalize(double value, BigDecimal[] scale)	{
+		BigDecimal element = new BigDecimal(value).setScale(10, RoundingMode.CEILING);
+		return (scale[0].add(element.subtract(scale[1])).multiply(scale[2])).setScale(10, RoundingMode.FLOOR).doubleValue();
+	}
+	
+	/**
+	 * Average the flux over one boxcar window, shared by boxcarSmooth and LightcurvePlan so that both
+	 * do exactly the same arithmetic
+	 * @param flux gives the flux at each index
+	 * @param first is the index of the first point in the window
+	 * @param last is the index of the last point in the window
+	 * @return the average flux of the window
+	 */
+	static double windowAverage(IntToDoubleFunction flux, int first, int last)	{
+		BigDecimal binSizeBD = new BigDecimal(last - first + 1).setScale(10, RoundingMode.CEILING);
+		BigDecimal sum = new BigDecimal(flux.applyAsDouble(first)).setScale(10, RoundingMode.CEILING);
+		for(int j = first + 1; j <= last; j++)	{
+			BigDecimal toAdd = new BigDecimal(flux.applyAsDouble(j)).setScale(10, RoundingMode.CEILING);
+			sum = sum.add(toAdd);
+		}
+		return sum.divide(binSizeBD, 10, RoundingMode.CEILING).doubleValue();
+	}
+	
+	/**
+	 * @param flux is a flux value
+	 * @param mode is FLOOR for a maximum or CEILING for a minimum
+	 * @return the flux rounded to 11 decimal places, as kept by getMaxFlux and getMinFlux
+	 */
+	static double roundFlux(double flux, RoundingMode mode)	{
+		return new BigDecimal(flux).setScale(11, mode).doubleValue();
+	}
+	
+	/**
+	 * Index this Lightcurve with the same gap threshold as another one, if that one is segmented
+	 * @param from is the Lightcurve this one was derived from
+	 */
+	private void inheritSegments(Lightcurve from)	{
+		if(from.segments == null)
+			segments = null;
+		else
+			segments = new SegmentIndex(this, from.segments.getGapThreshold());
+	}
+	
+	/**
+	 * Index a Lightcurve built by joining pieces, one for each segment of another Lightcurve, when
+	 * the pieces may be sampled more coarsely than the original.  The gap threshold is raised to the
+	 * largest time step within any piece, so each piece stays a single segment.  The steps between
+	 * pieces span the original gaps and still split them, unless a gap was shorter than the new
+	 * sampling, in which case those pieces are joined.
+	 * @param from is the Lightcurve the pieces were made from
+	 * @param pieces is the index of the first point of each piece, in order
+	 */
+	private void indexPieces(Lightcurve from, int[] pieces)	{
+		if(from.segments == null || data.size() == 0)	{
+			segments = null;
+			return;
+		}
+		double threshold = from.segments.getGapThreshold();
+		for(int p = 0; p < pieces.length; p++)	{
+			int end = p + 1 < pieces.length ? pieces[p + 1] : data.size();
+			for(int i = pieces[p] + 1; i < end; i++)
+				threshold = Math.max(threshold, data.get(i).getTime() - data.get(i - 1).getTime());
+		}
+		segments = new SegmentIndex(this, threshold);
+	}
+	
+	/**
+	 * @return the first and last index of each segment, as {first0, last0, first1, last1, ...}.
+	 * An unsegmented Lightcurve is a single range.
+	 */
+	private int[] segmentRanges()	{
+		if(data.size() == 0)
+			return new int[0];
+		if(segments == null)
+			return new int[] {0, data.size() - 1};
+		int[] ranges = new int[2 * segments.size()];
+		for(int s = 0; s < segments.size(); s++)	{
+			ranges[2 * s] = segments.getStart(s);
+			ranges[2 * s + 1] = segments.getEnd(s);
+		}
+		return ranges;
+	}
+	
 	/**
 	 * Method to ensure startTime and endTime are within the bounds of the Lightcurve
 	 * @param startTime is the given time to be used as the start of some subcurve
@@ -0,0 +1,714 @@
+/**
+ * A lazy chain of operations on a Lightcurve.  subsection, normalizeTime, normalizeFlux and
+ * boxcarSmooth only record a step here; nothing is computed or copied until a terminal operation
+ * (collect, toFile, size, averageFlux, weightedAverageFlux, getMaxFlux, getMinFlux) runs the plan.
+ * The steps are then fused into as few passes over the data as possible: subsections become index
+ * ranges, normalizations are applied point by point as the data streams past, and a boxcar reads
+ * its input through a ring buffer, so a chain like subsection, normalizeFlux, boxcarSmooth is one
+ * pass to find the flux limits and one pass to produce the result.  The only extra pass is where
+ * a normalizeFlux follows a boxcarSmooth, which stores the smoothed flux instead of smoothing twice.
+ * <p>
+ * Every step does exactly the same arithmetic as the eager Lightcurve method of the same name, so
+ * collect() gives the same values, bit for bit, as calling the eager methods one after the other.
+ * The plan reads the source Lightcurve when a terminal operation runs, and explain() describes the
+ * passes it will make.
+ *
+ */
+
+//import statements:
+import java.io.File;
+import java.io.IOException;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+import java.util.ArrayList;
+
+public class LightcurvePlan {
+	//instance variables
+	private Lightcurve source;
+	private ArrayList<Step> steps;
+
+	//kinds of step
+	private static final int SUBSECTION = 0;
+	private static final int NORMALIZE_TIME = 1;
+	private static final int NORMALIZE_FLUX = 2;
+	private static final int SMOOTH = 3;
+
+	/**
+	 * Create an empty plan over a Lightcurve
+	 * @param l is the source Lightcurve
+	 */
+	public LightcurvePlan(Lightcurve l)	{
+		source = l;
+		steps = new ArrayList<Step>();
+	}
+
+	/**
+	 * Create a plan that extends another by one step
+	 * @param previous is the plan to extend
+	 * @param step is the step to add
+	 */
+	private LightcurvePlan(LightcurvePlan previous, Step step)	{
+		source = previous.source;
+		steps = new ArrayList<Step>(previous.steps);
+		steps.add(step);
+	}
+
+	/**
+	 * Lazy version of Lightcurve.subsection
+	 * @param startTime is a double denoting the start time of the subsection
+	 * @param endTime is a double denoting the end time of the subsection
+	 * @return the extended plan
+	 */
+	public LightcurvePlan subsection(double startTime, double endTime)	{
+		return new LightcurvePlan(this, new Step(SUBSECTION, startTime, endTime));
+	}
+
+	/**
+	 * Lazy version of Lightcurve.normalizeTime
+	 * @param lowLimit is the lower bound of normalization
+	 * @param highLimit is the upper bound of normalization
+	 * @return the extended plan
+	 */
+	public LightcurvePlan normalizeTime(double lowLimit, double highLimit)	{
+		return new LightcurvePlan(this, new Step(NORMALIZE_TIME, lowLimit, highLimit));
+	}
+
+	/**
+	 * Lazy version of Lightcurve.normalizeTime()
+	 * @return the extended plan
+	 */
+	public LightcurvePlan normalizeTime()	{
+		return normalizeTime(0, 1);
+	}
+
+	/**
+	 * Lazy version of Lightcurve.normalizeFlux
+	 * @param lowLimit is the lower bound of normalization
+	 * @param highLimit is the upper bound of normalization
+	 * @return the extended plan
+	 */
+	public LightcurvePlan normalizeFlux(double lowLimit, double highLimit)	{
+		return new LightcurvePlan(this, new Step(NORMALIZE_FLUX, lowLimit, highLimit));
+	}
+
+	/**
+	 * Lazy version of Lightcurve.normalizeFlux()
+	 * @return the extended plan
+	 */
+	public LightcurvePlan normalizeFlux()	{
+		return normalizeFlux(0, 1);
+	}
+
+	/**
+	 * Lazy version of Lightcurve.boxcarSmooth
+	 * @param binSize is the number of points to include in the boxcar.  If the binSize is even, it will
+	 * be increased by 1.
+	 * @return the extended plan
+	 */
+	public LightcurvePlan boxcarSmooth(int binSize)	{
+		//ensure binSize is odd, and correct accordingly
+		if(binSize % 2 != 1)
+			binSize += 1;
+		return new LightcurvePlan(this, new Step(SMOOTH, binSize, 0));
+	}
+
+	/**
+	 * Describe the steps of this plan and the passes over the data it will make when run
+	 * @return a description of the plan, one line per step and per pass
+	 */
+	public String explain()	{
+		StringBuilder result = new StringBuilder();
+		result.append("source: Lightcurve of ").append(source.size()).append(" points");
+		if(source.getSegments() != null)
+			result.append(", segmented with gap threshold ").append(source.getSegments().getGapThreshold());
+		for(int i = 0; i < steps.size(); i++)
+			result.append("\nstep ").append(i + 1).append(": ").append(steps.get(i));
+
+		//follow the same rules as run() to work out the passes
+		int pass = 1;
+		boolean smoothed = false;
+		StringBuilder fused = new StringBuilder("read source");
+		for(Step s : steps)	{
+			if(s.kind == NORMALIZE_FLUX)	{
+				if(smoothed)	{
+					result.append("\npass ").append(pass++).append(": ").append(fused)
+						.append(" -> store flux, find flux limits");
+					fused = new StringBuilder("read stored flux");
+					smoothed = false;
+				}
+				else	{
+					result.append("\npass ").append(pass++).append(": ").append(fused).append(" -> find flux limits");
+				}
+			}
+			else if(s.kind == SMOOTH)	{
+				smoothed = true;
+			}
+			fused.append(" -> ").append(s);
+		}
+		result.append("\npass ").append(pass).append(": ").append(fused).append(" -> output");
+		return result.toString();
+	}
+
+	/**
+	 * Run the plan and store the result
+	 * @return the result of the plan, the same as running the eager methods in order
+	 */
+	public Lightcurve collect()	{
+		final Lightcurve result = new Lightcurve();
+		double threshold = run(new Sink()	{
+			public void accept(double time, double flux, double weight)	{
+				result.add(new DataPoint(time, flux, weight));
+			}
+		});
+		if(!Double.isNaN(threshold))
+			result.segment(threshold);
+		return result;
+	}
+
+	/**
+	 * Run the plan and print the result to a file, in the same format as Lightcurve.toFile,
+	 * without storing it
+	 * @param fName is the name of a file.  It can already exist, or not exist.  Both are handled.
+	 * @throws IOException
+	 */
+	public void toFile(String fName) throws IOException	{
+		File output = new File(fName);
+		output.createNewFile();
+
+		final BufferedWriter bw = new BufferedWriter(new FileWriter(output.getAbsoluteFile()));
+		final IOException[] failure = new IOException[1];
+		run(new Sink()	{
+			private boolean first = true;
+			public void accept(double time, double flux, double weight)	{
+				if(failure[0] != null)
+					return;
+				try	{
+					if(!first)
+						bw.write("\n");
+					bw.write(new DataPoint(time, flux, weight).toString());
+					first = false;
+				}
+				catch(IOException e)	{
+					failure[0] = e;
+				}
+			}
+		});
+		bw.close();
+		if(failure[0] != null)
+			throw failure[0];
+	}
+
+	/**
+	 * @return the number of points the plan produces, found from the times alone
+	 */
+	public int size()	{
+		Times times = new SourceTimes(source);
+		for(Step s : steps)	{
+			if(s.kind == SUBSECTION)
+				times = subsectionTimes(times, s.a, s.b);
+			else if(s.kind == NORMALIZE_TIME)
+				times = new NormalizedTimes(times, Lightcurve.normalization(s.a, s.b, times.time(0), times.time(times.size() - 1)));
+		}
+		return times.size();
+	}
+
+	/**
+	 * @return the average flux of the result of the plan
+	 */
+	public double averageFlux()	{
+		final double[] sums = new double[2];
+		run(new Sink()	{
+			public void accept(double time, double flux, double weight)	{
+				sums[0] += flux;
+				sums[1]++;
+			}
+		});
+		return sums[0] / sums[1];
+	}
+
+	/**
+	 * @return the weighted average flux of the result of the plan
+	 */
+	public double weightedAverageFlux()	{
+		final double[] sums = new double[2];
+		run(new Sink()	{
+			public void accept(double time, double flux, double weight)	{
+				sums[0] += (flux * weight);
+				sums[1] += weight;
+			}
+		});
+		return sums[0] / sums[1];
+	}
+
+	/**
+	 * @return the maximum flux of the result of the plan, as Lightcurve.getMaxFlux
+	 */
+	public double getMaxFlux()	{
+		final FluxLimits limits = new FluxLimits();
+		run(new Sink()	{
+			public void accept(double time, double flux, double weight)	{
+				limits.add(flux);
+			}
+		});
+		return limits.max();
+	}
+
+	/**
+	 * @return the minimum flux of the result of the plan, as Lightcurve.getMinFlux
+	 */
+	public double getMinFlux()	{
+		final FluxLimits limits = new FluxLimits();
+		run(new Sink()	{
+			public void accept(double time, double flux, double weight)	{
+				limits.add(flux);
+			}
+		});
+		return limits.min();
+	}
+
+	/**
+	 * Run the plan, passing every resulting point to a sink in order
+	 * @param sink receives the points
+	 * @return the gap threshold the result is segmented with, or NaN if it is not segmented
+	 */
+	private double run(Sink sink)	{
+		Times times = new SourceTimes(source);
+		FluxChain flux = new FluxChain();
+		double threshold = Double.NaN;
+		if(source.getSegments() != null)
+			threshold = source.getSegments().getGapThreshold();
+		boolean smoothed = false;
+
+		for(Step s : steps)	{
+			if(s.kind == SUBSECTION)	{
+				int size = times.size();
+				times = subsectionTimes(times, s.a, s.b);
+				flux = flux.then(new RangeStage(((RangeTimes) times).first, times.size()), size);
+			}
+			else if(s.kind == NORMALIZE_TIME)	{
+				BigDecimal[] scale = Lightcurve.normalization(s.a, s.b, times.time(0), times.time(times.size() - 1));
+				times = new NormalizedTimes(times, scale);
+				//the gap threshold is in the old time units, as in Lightcurve.normalizeTime
+				threshold = Double.NaN;
+			}
+			else if(s.kind == NORMALIZE_FLUX)	{
+				//one pass to find the limits, storing the flux as well if it has been smoothed
+				FluxLimits limits = new FluxLimits();
+				int size = times.size();
+				if(smoothed)	{
+					double[] stored = new double[size];
+					FluxStream in = flux.open(source);
+					for(int i = 0; i < size; i++)	{
+						stored[i] = in.next();
+						limits.add(stored[i]);
+					}
+					flux = new FluxChain(stored);
+					smoothed = false;
+				}
+				else	{
+					FluxStream in = flux.open(source);
+					for(int i = 0; i < size; i++)
+						limits.add(in.next());
+				}
+				flux = flux.then(new NormalizeStage(Lightcurve.normalization(s.a, s.b, limits.min(), limits.max())), size);
+			}
+			else	{
+				flux = flux.then(new SmoothStage((int) s.a, segmentRanges(times, threshold)), times.size());
+				smoothed = true;
+			}
+		}
+
+		//the output pass
+		FluxStream out = flux.open(source);
+		int size = times.size();
+		for(int i = 0; i < size; i++)
+			sink.accept(times.time(i), out.next(), source.get(times.sourceIndex(i)).getWeight());
+		return threshold;
+	}
+
+	/**
+	 * Resolve a subsection against the current times, with the same checks, corrections and
+	 * index search as Lightcurve.subsection
+	 * @param times is the current times
+	 * @param startTime is the start time of the subsection
+	 * @param endTime is the end time of the subsection
+	 * @return the times of the subsection
+	 */
+	private static RangeTimes subsectionTimes(Times times, double startTime, double endTime)	{
+		int last = times.size() - 1;
+		double firstTime = times.time(0);
+		double lastTime = times.time(last);
+		if(startTime > lastTime)
+			throw new IllegalArgumentException("The start time is beyond the range of the Lightcurve."
+					+ "\nstartTime must be less than or equal to " + lastTime);
+		if(endTime < firstTime)
+			throw new IllegalArgumentException("The end time is before the range of the Lightcurve."
+					+ "\nendTime must be greater than or equal to " + firstTime);
+		if(startTime < firstTime)
+			startTime = firstTime;
+		if(endTime > lastTime)
+			endTime = lastTime;
+
+		//find start
+		double time = 0;
+		int index = -1;
+		while(time < startTime)	{
+			index++;
+			time = times.time(index);
+		}
+		int first = index;
+
+		//find end
+		if(endTime == lastTime)
+			index = last;
+		else	{
+			while(time <= endTime)	{
+				index++;
+				time = times.time(index);
+			}
+		}
+		return new RangeTimes(times, first, index - first + 1);
+	}
+
+	/**
+	 * Find the segments of the current times, as a segmented Lightcurve with these times would
+	 * @param times is the current times
+	 * @param threshold is the gap threshold, or NaN if the curve is not segmented
+	 * @return the first and last index of each segment, as {first0, last0, first1, last1, ...}
+	 */
+	private static int[] segmentRanges(Times times, double threshold)	{
+		int size = times.size();
+		if(size == 0)
+			return new int[0];
+		if(Double.isNaN(threshold))
+			return new int[] {0, size - 1};
+
+		ArrayList<Integer> starts = new ArrayList<Integer>();
+		starts.add(0);
+		double lastTime = times.time(0);
+		for(int i = 1; i < size; i++)	{
+			double time = times.time(i);
+			if(time - lastTime > threshold)
+				starts.add(i);
+			lastTime = time;
+		}
+		int[] ranges = new int[2 * starts.size()];
+		for(int s = 0; s < starts.size(); s++)	{
+			ranges[2 * s] = starts.get(s);
+			ranges[2 * s + 1] = (s + 1 < starts.size() ? starts.get(s + 1) : size) - 1;
+		}
+		return ranges;
+	}
+
+	/**
+	 * One recorded step of a plan
+	 */
+	private static class Step	{
+		private int kind;
+		private double a;
+		private double b;
+
+		private Step(int k, double first, double second)	{
+			kind = k;
+			a = first;
+			b = second;
+		}
+
+		public String toString()	{
+			if(kind == SUBSECTION)
+				return "subsection(" + a + ", " + b + ")";
+			if(kind == NORMALIZE_TIME)
+				return "normalizeTime(" + a + ", " + b + ")";
+			if(kind == NORMALIZE_FLUX)
+				return "normalizeFlux(" + a + ", " + b + ")";
+			return "boxcarSmooth(" + (int) a + ")";
+		}
+	}
+
+	/**
+	 * Receives the points of a plan as it runs
+	 */
+	private interface Sink	{
+		void accept(double time, double flux, double weight);
+	}
+
+	/**
+	 * Keeps the maximum and minimum flux exactly as Lightcurve.getMaxFlux and getMinFlux do
+	 */
+	private static class FluxLimits	{
+		private double maximum;
+		private double minimum;
+		private boolean empty = true;
+
+		private void add(double flux)	{
+			if(empty)	{
+				maximum = Lightcurve.roundFlux(flux, RoundingMode.FLOOR);
+				minimum = Lightcurve.roundFlux(flux, RoundingMode.CEILING);
+				empty = false;
+			}
+			else	{
+				if(flux > maximum)
+					maximum = Lightcurve.roundFlux(flux, RoundingMode.FLOOR);
+				if(flux < minimum)
+					minimum = Lightcurve.roundFlux(flux, RoundingMode.CEILING);
+			}
+		}
+
+		private double max()	{
+			if(empty)
+				throw new IndexOutOfBoundsException("The Lightcurve is empty.");
+			return maximum;
+		}
+
+		private double min()	{
+			if(empty)
+				throw new IndexOutOfBoundsException("The Lightcurve is empty.");
+			return minimum;
+		}
+	}
+
+	/**
+	 * Random access to the times of the points at some step of a plan.  Times are cheap, since only
+	 * subsection and normalizeTime change them, so they are never stored.
+	 */
+	private interface Times	{
+		int size();
+		double time(int index);
+		int sourceIndex(int index);
+	}
+
+	private static class SourceTimes implements Times	{
+		private Lightcurve l;
+
+		private SourceTimes(Lightcurve source)	{
+			l = source;
+		}
+
+		public int size()	{
+			return l.size();
+		}
+
+		public double time(int index)	{
+			return l.get(index).getTime();
+		}
+
+		public int sourceIndex(int index)	{
+			return index;
+		}
+	}
+
+	private static class RangeTimes implements Times	{
+		private Times up;
+		private int first;
+		private int count;
+
+		private RangeTimes(Times upstream, int f, int c)	{
+			up = upstream;
+			first = f;
+			count = c;
+		}
+
+		public int size()	{
+			return count;
+		}
+
+		public double time(int index)	{
+			return up.time(first + index);
+		}
+
+		public int sourceIndex(int index)	{
+			return up.sourceIndex(first + index);
+		}
+	}
+
+	private static class NormalizedTimes implements Times	{
+		private Times up;
+		private BigDecimal[] scale;
+
+		private NormalizedTimes(Times upstream, BigDecimal[] s)	{
+			up = upstream;
+			scale = s;
+		}
+
+		public int size()	{
+			return up.size();
+		}
+
+		public double time(int index)	{
+			return Lightcurve.normalize(up.time(index), scale);
+		}
+
+		public int sourceIndex(int index)	{
+			return up.sourceIndex(index);
+		}
+	}
+
+	/**
+	 * Reads flux values one at a time, in order
+	 */
+	private interface FluxStream	{
+		double next();
+
+		//passes over a value that will not be used
+		default void skip()	{
+			next();
+		}
+	}
+
+	/**
+	 * A flux step that can be applied to an upstream FluxStream
+	 */
+	private interface FluxStage	{
+		FluxStream apply(FluxStream upstream, int upstreamSize);
+	}
+
+	/**
+	 * The flux steps of a plan since the last stored flux (or the source).  Each open() starts a
+	 * fresh stream through all of them, so the same chain can be read once for limits and once for output.
+	 */
+	private static class FluxChain	{
+		private double[] stored;
+		private ArrayList<FluxStage> stages = new ArrayList<FluxStage>();
+		private ArrayList<Integer> sizes = new ArrayList<Integer>();
+
+		private FluxChain()	{
+			stored = null;
+		}
+
+		private FluxChain(double[] s)	{
+			stored = s;
+		}
+
+		private FluxChain then(FluxStage stage, int upstreamSize)	{
+			FluxChain next = new FluxChain(stored);
+			next.stages.addAll(stages);
+			next.sizes.addAll(sizes);
+			next.stages.add(stage);
+			next.sizes.add(upstreamSize);
+			return next;
+		}
+
+		private FluxStream open(final Lightcurve source)	{
+			FluxStream stream;
+			if(stored != null)	{
+				final double[] values = stored;
+				stream = new FluxStream()	{
+					private int i = 0;
+					public double next()	{
+						return values[i++];
+					}
+				};
+			}
+			else	{
+				stream = new FluxStream()	{
+					private int i = 0;
+					public double next()	{
+						return source.get(i++).getFlux();
+					}
+				};
+			}
+			for(int s = 0; s < stages.size(); s++)
+				stream = stages.get(s).apply(stream, sizes.get(s));
+			return stream;
+		}
+	}
+
+	private static class RangeStage implements FluxStage	{
+		private int first;
+		private int count;
+
+		private RangeStage(int f, int c)	{
+			first = f;
+			count = c;
+		}
+
+		public FluxStream apply(final FluxStream up, int upstreamSize)	{
+			return new FluxStream()	{
+				private boolean skipped = false;
+				public double next()	{
+					if(!skipped)	{
+						for(int i = 0; i < first; i++)
+							up.skip();
+						skipped = true;
+					}
+					return up.next();
+				}
+			};
+		}
+	}
+
+	private static class NormalizeStage implements FluxStage	{
+		private BigDecimal[] scale;
+
+		private NormalizeStage(BigDecimal[] s)	{
+			scale = s;
+		}
+
+		public FluxStream apply(final FluxStream up, int upstreamSize)	{
+			return new FluxStream()	{
+				public double next()	{
+					return Lightcurve.normalize(up.next(), scale);
+				}
+
+				public void skip()	{
+					up.skip();
+				}
+			};
+		}
+	}
+
+	/**
+	 * Boxcar smoothing through a ring buffer holding the binSize upstream values around the current
+	 * point, with the same segment edges and the same BigDecimal sum as Lightcurve.boxcarSmooth
+	 */
+	private static class SmoothStage implements FluxStage	{
+		private int binSize;
+		private int[] ranges;
+
+		private SmoothStage(int b, int[] r)	{
+			binSize = b;
+			ranges = r;
+		}
+
+		public FluxStream apply(final FluxStream up, final int upstreamSize)	{
+			final int halfBin = binSize / 2;
+			return new FluxStream()	{
+				private double[] ring = new double[binSize];
+				private int read = 0;	//number of upstream values read so far
+				private int index = 0;	//index of the next output
+				private int range = 0;	//current segment, as an index into ranges
+
+				public double next()	{
+					fill();
+
+					double result;
+					if(index >= ranges[range] + halfBin && index <= ranges[range + 1] - halfBin)
+						result = Lightcurve.windowAverage(j -> ring[j % binSize], index - halfBin, index + halfBin);
+					else	{
+						result = ring[index % binSize];
+					}
+					index++;
+					return result;
+				}
+
+				public void skip()	{
+					fill();
+					index++;
+				}
+
+				//read ahead to the end of the window, but never beyond the upstream
+				private void fill()	{
+					int need = Math.min(index + halfBin, upstreamSize - 1);
+					while(read <= need)	{
+						ring[read % binSize] = up.next();
+						read++;
+					}
+					while(index > ranges[range + 1])
+						range += 2;
+				}
+			};
+		}
+	}
+}
@@ -8,6 +8,9 @@ public class LightcurveTest {
 	 * @param args
 	 */
 	public static void main(String[] args) throws FileNotFoundException, IOException {
+		checkCorrelation();
+		checkLazy();
+		
 //		File testFile = new File("testCurve.dat");
 //		Lightcurve l = new Lightcurve(testFile);
 		
@@ -54,4 +57,145 @@ public class LightcurveTest {
 		
 		
 	}
+	
+	/**
+	 * Check the FFT correlations of Correlator against a direct O(n^2) masked sum, with gaps in both
+	 * series and a maxLag larger than either series, so that no wrapped lag can slip through
+	 */
+	public static void checkCorrelation()	{
+		java.util.Random random = new java.util.Random(42);
+		Lightcurve a = new Lightcurve();
+		for(int i = 0; i < 60; i++)	{
+			if(i < 20 || i > 27)
+				a.add(new DataPoint(1000 + i, random.nextGaussian(), 1));
+		}
+		Lightcurve b = new Lightcurve();
+		for(int i = 0; i < 40; i++)	{
+			if(i < 10 || i > 14)
+				b.add(new DataPoint(1013 + i, random.nextGaussian(), 1));
+		}
+		
+		Correlator c = new Correlator(1);
+		double error = Math.max(compare(c.crossCorrelation(a, b, 100), a, b, -100, 100),
+				compare(c.crossCorrelation(b, a, 100), b, a, -100, 100));
+		error = Math.max(error, compare(c.autocorrelation(a, 100), a, a, 0, 100));
+		Lightcurve[] all = c.crossCorrelateAll(a, new Lightcurve[] {b, a}, 100);
+		error = Math.max(error, Math.max(compare(all[0], a, b, -100, 100), compare(all[1], a, a, -100, 100)));
+		
+		if(error > 1e-12)
+			throw new IllegalStateException("The FFT correlation is off the direct sum by " + error);
+		System.out.println("Correlation matches the direct sum, largest difference " + error);
+	}
+	
+	/**
+	 * Check that LightcurvePlan.collect gives bit for bit the same Lightcurve as the eager chain of the
+	 * same operations, on an unsegmented curve and on a segmented curve with gaps
+	 */
+	public static void checkLazy()	{
+		java.util.Random random = new java.util.Random(7);
+		Lightcurve l = new Lightcurve();
+		double time = 1.0480054E8;
+		for(int i = 0; i < 3000; i++)	{
+			if(i == 700 || i == 1900)
+				time += 86400;
+			l.add(new DataPoint(time, 1.0E4 * (1 + 0.01 * random.nextGaussian()), 0.5 + random.nextDouble()));
+			time += 58.84876;
+		}
+		Lightcurve segmented = l.deepCopy(l);
+		segmented.segmentByCadence(58.84876);
+		
+		for(Lightcurve c : new Lightcurve[] {l, segmented})	{
+			double start = c.get(500).getTime();
+			double end = c.get(2500).getTime();
+			sameCurve(c.lazy().subsection(start, end).normalizeFlux().boxcarSmooth(15).collect(),
+					c.subsection(start, end).normalizeFlux().boxcarSmooth(15));
+			sameCurve(c.lazy().boxcarSmooth(4).normalizeFlux(2, 10).boxcarSmooth(5).collect(),
+					c.boxcarSmooth(4).normalizeFlux(2, 10).boxcarSmooth(5));
+			sameCurve(c.lazy().normalizeTime().boxcarSmooth(7).collect(), c.normalizeTime().boxcarSmooth(7));
+		}
+		System.out.println("Lazy plans match the eager methods bit for bit");
+	}
+	
+	/**
+	 * Make sure two Lightcurves hold exactly the same points and segments
+	 */
+	private static void sameCurve(Lightcurve lazy, Lightcurve eager)	{
+		if(lazy.size() != eager.size())
+			throw new IllegalStateException("The lazy plan gave " + lazy.size() + " points instead of " + eager.size());
+		for(int i = 0; i < eager.size(); i++)	{
+			DataPoint a = lazy.get(i);
+			DataPoint b = eager.get(i);
+			if(Double.doubleToLongBits(a.getTime()) != Double.doubleToLongBits(b.getTime())
+					|| Double.doubleToLongBits(a.getFlux()) != Double.doubleToLongBits(b.getFlux())
+					|| Double.doubleToLongBits(a.getWeight()) != Double.doubleToLongBits(b.getWeight()))
+				throw new IllegalStateException("Point " + i + " of the lazy plan is " + a + " instead of " + b);
+		}
+		int lazySegments = lazy.getSegments() == null ? 0 : lazy.getSegments().size();
+		int eagerSegments = eager.getSegments() == null ? 0 : eager.getSegments().size();
+		if(lazySegments != eagerSegments)
+			throw new IllegalStateException("The lazy plan gave " + lazySegments + " segments instead of " + eagerSegments);
+	}
+	
+	/**
+	 * Compare a correlation with the direct sum, sum of a[i] b[i + k] over the lags with any overlap,
+	 * normalized by the overlap and the variances.  a and b have one point per unit of time.
+	 * @return the largest difference in the correlation coefficient
+	 */
+	private static double compare(Lightcurve result, Lightcurve a, Lightcurve b, int minLag, int maxLag)	{
+		double[][] sa = grid(a);
+		double[][] sb = grid(b);
+		double norm = Math.sqrt(sa[2][0] * sb[2][0]);
+		double offset = b.get(0).getTime() - a.get(0).getTime();
+		
+		int point = 0;
+		double error = 0;
+		for(int k = minLag; k <= maxLag; k++)	{
+			double sum = 0;
+			int overlap = 0;
+			for(int i = 0; i < sa[0].length; i++)	{
+				if(i + k >= 0 && i + k < sb[0].length && sa[1][i] > 0 && sb[1][i + k] > 0)	{
+					sum += sa[0][i] * sb[0][i + k];
+					overlap++;
+				}
+			}
+			if(overlap == 0)
+				continue;
+			if(point >= result.size())
+				throw new IllegalStateException("The correlation is missing lag " + k);
+			DataPoint d = result.get(point++);
+			if(d.getTime() != offset + k || d.getWeight() != overlap)
+				throw new IllegalStateException("Lag " + k + " came back as " + d.getTime() + " with overlap " + d.getWeight()
+						+ " instead of overlap " + overlap);
+			error = Math.max(error, Math.abs(d.getFlux() - sum / (overlap * norm)));
+		}
+		if(point != result.size())
+			throw new IllegalStateException("The correlation has " + (result.size() - point) + " lags with no real overlap");
+		return error;
+	}
+	
+	/**
+	 * @return {values, mask, {variance}} of a Lightcurve with one point per unit of time, with the mean
+	 * of the valid values taken out
+	 */
+	private static double[][] grid(Lightcurve l)	{
+		double start = l.get(0).getTime();
+		int length = (int) (l.get(l.size() - 1).getTime() - start) + 1;
+		double[] values = new double[length];
+		double[] mask = new double[length];
+		double mean = 0;
+		for(int i = 0; i < l.size(); i++)	{
+			int cell = (int) (l.get(i).getTime() - start);
+			values[cell] = l.get(i).getFlux();
+			mask[cell] = 1;
+			mean += values[cell] / l.size();
+		}
+		double variance = 0;
+		for(int i = 0; i < length; i++)	{
+			if(mask[i] > 0)	{
+				values[i] -= mean;
+				variance += values[i] * values[i] / l.size();
+			}
+		}
+		return new double[][] {values, mask, {variance}};
+	}
 }
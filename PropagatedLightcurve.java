@@ -0,0 +1,97 @@
+/**
+ * Class to hold a Lightcurve produced by a weighted operation (smoothing, stacking) along with
+ * the propagated uncertainty and the effective number of samples behind each point.
+ * The weight of each DataPoint in the held Lightcurve is the inverse variance of that point.
+ *
+ */
+
+//import statements:
+import java.io.File;
+import java.io.IOException;
+import java.io.FileWriter;
+import java.io.BufferedWriter;
+
+public class PropagatedLightcurve {
+	//instance variables
+	private Lightcurve curve;
+	private double[] errors;
+	private double[] effectiveCounts;
+
+	/**
+	 * Create a PropagatedLightcurve from already computed values.
+	 * @param c is the Lightcurve of weighted mean values
+	 * @param e is the propagated 1-sigma error of each point in c
+	 * @param n is the effective sample count of each point in c
+	 */
+	public PropagatedLightcurve(Lightcurve c, double[] e, double[] n)	{
+		if(c.size() != e.length || c.size() != n.length)
+			throw new IllegalArgumentException("The errors and effective counts must have one value per point.");
+		curve = c;
+		errors = e;
+		effectiveCounts = n;
+	}
+
+	/**
+	 * @return the number of points
+	 */
+	public int size()	{
+		return curve.size();
+	}
+
+	/**
+	 * @return the Lightcurve of weighted mean values, weighted by inverse variance
+	 */
+	public Lightcurve getCurve()	{
+		return curve;
+	}
+
+	/**
+	 * @param index is the index of a point
+	 * @return the propagated 1-sigma error of the point
+	 */
+	public double getError(int index)	{
+		return errors[index];
+	}
+
+	/**
+	 * The effective sample count is (sum w)^2 / sum(w^2) over the samples that went into a point.
+	 * It equals the number of samples when all weights are equal.
+	 * @param index is the index of a point
+	 * @return the effective sample count of the point
+	 */
+	public double getEffectiveCount(int index)	{
+		return effectiveCounts[index];
+	}
+
+	/**
+	 * Return a string containing all of the data in the format:<br>
+	 * time flux error effectiveCount<br>
+	 * ...
+	 */
+	public String toString()	{
+		StringBuilder result = new StringBuilder();
+		int size = curve.size();
+		for(int i = 0; i < size; i++)	{
+			DataPoint d = curve.get(i);
+			result.append(d.getTime()).append("\t").append(d.getFlux()).append("\t")
+				.append(errors[i]).append("\t").append(effectiveCounts[i]);
+			if(i < size - 1)
+				result.append("\n");
+		}
+		return result.toString();
+	}
+
+	/**
+	 * Prints a string representation of this PropagatedLightcurve to a file
+	 * @param fName is the name of a file.  It can already exist, or not exist.  Both are handled.
+	 * @throws IOException
+	 */
+	public void toFile(String fName) throws IOException	{
+		File output = new File(fName);
+		output.createNewFile();
+
+		BufferedWriter bw = new BufferedWriter(new FileWriter(output.getAbsoluteFile()));
+		bw.write(this.toString());
+		bw.close();
+	}
+}
@@ -0,0 +1,194 @@
+/**
+ * A reusable plan for the FFT of real data of a fixed power of two length n, working on primitive
+ * arrays.  The n real values are packed into n/2 complex values, transformed with an in-place
+ * radix-2 FFT, and then split into the n/2 + 1 non-negative frequencies of the real transform.  The
+ * bit reversal order and all of the twiddle factors are worked out once, when the plan is made.
+ * <p>
+ * A plan holds no scratch space, so it can be shared between threads: the transforms work in the
+ * caller's arrays.  plan(n) keeps one plan per length.
+ *
+ */
+
+//import statements:
+import java.util.concurrent.ConcurrentHashMap;
+
+public class RealFFT {
+	//instance variables
+	private int n;
+	private int half;
+	private int[] reversed;
+	private double[] cos;	//cos(2 pi j / half), for the complex FFT
+	private double[] sin;
+	private double[] splitCos;	//cos(2 pi k / n), for splitting the real transform
+	private double[] splitSin;
+
+	private static final ConcurrentHashMap<Integer, RealFFT> PLANS = new ConcurrentHashMap<Integer, RealFFT>();
+
+	/**
+	 * @param length is a power of two, at least 4
+	 * @return the shared plan for that length
+	 */
+	public static RealFFT plan(int length)	{
+		return PLANS.computeIfAbsent(length, RealFFT::new);
+	}
+
+	/**
+	 * Make a plan
+	 * @param length is the number of real values to transform, a power of two, at least 4
+	 */
+	public RealFFT(int length)	{
+		if(length < 4 || Integer.bitCount(length) != 1)
+			throw new IllegalArgumentException("The FFT length must be a power of two, at least 4.  It was " + length);
+		n = length;
+		half = length / 2;
+
+		int bits = Integer.numberOfTrailingZeros(half);
+		reversed = new int[half];
+		for(int j = 0; j < half; j++)
+			reversed[j] = bits == 0 ? 0 : Integer.reverse(j) >>> (32 - bits);
+
+		cos = new double[half / 2];
+		sin = new double[half / 2];
+		for(int j = 0; j < half / 2; j++)	{
+			cos[j] = Math.cos(2 * Math.PI * j / half);
+			sin[j] = Math.sin(2 * Math.PI * j / half);
+		}
+		splitCos = new double[half / 2 + 1];
+		splitSin = new double[half / 2 + 1];
+		for(int k = 0; k <= half / 2; k++)	{
+			splitCos[k] = Math.cos(2 * Math.PI * k / n);
+			splitSin[k] = Math.sin(2 * Math.PI * k / n);
+		}
+	}
+
+	/**
+	 * @return the number of real values this plan transforms
+	 */
+	public int size()	{
+		return n;
+	}
+
+	/**
+	 * Forward transform, X[k] = sum over j of x[j] e^(-2 pi i j k / n), for k = 0 to n/2
+	 * @param x is the n real values
+	 * @param re receives the real parts of the n/2 + 1 frequencies
+	 * @param im receives the imaginary parts of the n/2 + 1 frequencies
+	 */
+	public void forward(double[] x, double[] re, double[] im)	{
+		//pack the even values into the real parts and the odd into the imaginary parts
+		for(int j = 0; j < half; j++)	{
+			re[j] = x[2 * j];
+			im[j] = x[2 * j + 1];
+		}
+		transform(re, im, false);
+
+		//split into the transform of the real data, a pair of frequencies k and half - k at a time
+		double r0 = re[0];
+		double i0 = im[0];
+		re[0] = r0 + i0;
+		im[0] = 0;
+		re[half] = r0 - i0;
+		im[half] = 0;
+		for(int k = 1; k <= half / 2; k++)	{
+			int mk = half - k;
+			double ar = re[k];
+			double ai = im[k];
+			double br = re[mk];
+			double bi = im[mk];
+			double er = (ar + br) / 2;
+			double ei = (ai - bi) / 2;
+			double or = (ai + bi) / 2;
+			double oi = (br - ar) / 2;
+			double c = splitCos[k];
+			double s = splitSin[k];
+			double tr = c * or + s * oi;
+			double ti = c * oi - s * or;
+			re[k] = er + tr;
+			im[k] = ei + ti;
+			re[mk] = er - tr;
+			im[mk] = ti - ei;
+		}
+	}
+
+	/**
+	 * Inverse transform, the reverse of forward, including the 1/n scaling.  re and im are used as
+	 * scratch space and are changed.
+	 * @param re is the real parts of the n/2 + 1 frequencies
+	 * @param im is the imaginary parts of the n/2 + 1 frequencies
+	 * @param x receives the n real values
+	 */
+	public void inverse(double[] re, double[] im, double[] x)	{
+		//rebuild the packed half length spectrum, a pair of frequencies k and half - k at a time
+		double x0 = re[0];
+		double xm = re[half];
+		re[0] = (x0 + xm) / 2;
+		im[0] = (x0 - xm) / 2;
+		for(int k = 1; k <= half / 2; k++)	{
+			int mk = half - k;
+			double pr = re[k];
+			double pi = im[k];
+			double qr = re[mk];
+			double qi = im[mk];
+			double er = (pr + qr) / 2;
+			double ei = (pi - qi) / 2;
+			double dr = pr - qr;
+			double di = pi + qi;
+			double c = splitCos[k];
+			double s = splitSin[k];
+			double or = (dr * c - di * s) / 2;
+			double oi = (dr * s + di * c) / 2;
+			re[k] = er - oi;
+			im[k] = ei + or;
+			re[mk] = er + oi;
+			im[mk] = or - ei;
+		}
+		transform(re, im, true);
+
+		//unpack, scaling by 1/half for the complex inverse
+		double scale = 1.0 / half;
+		for(int j = 0; j < half; j++)	{
+			x[2 * j] = re[j] * scale;
+			x[2 * j + 1] = im[j] * scale;
+		}
+	}
+
+	/**
+	 * In-place radix-2 complex FFT of the first n/2 values of re and im, without scaling
+	 * @param re is the real parts
+	 * @param im is the imaginary parts
+	 * @param inverse is true for the inverse direction
+	 */
+	private void transform(double[] re, double[] im, boolean inverse)	{
+		for(int j = 0; j < half; j++)	{
+			int r = reversed[j];
+			if(r > j)	{
+				double t = re[j];
+				re[j] = re[r];
+				re[r] = t;
+				t = im[j];
+				im[j] = im[r];
+				im[r] = t;
+			}
+		}
+
+		double sign = inverse ? 1 : -1;
+		for(int length = 2; length <= half; length <<= 1)	{
+			int halfLength = length >> 1;
+			int stride = half / length;
+			for(int start = 0; start < half; start += length)	{
+				for(int j = 0; j < halfLength; j++)	{
+					double wr = cos[j * stride];
+					double wi = sign * sin[j * stride];
+					int a = start + j;
+					int b = a + halfLength;
+					double tr = wr * re[b] - wi * im[b];
+					double ti = wr * im[b] + wi * re[b];
+					re[b] = re[a] - tr;
+					im[b] = im[a] - ti;
+					re[a] += tr;
+					im[a] += ti;
+				}
+			}
+		}
+	}
+}
@@ -0,0 +1,203 @@
+/**
+ * Class to index the contiguous runs (segments) of a Lightcurve.  A new segment starts wherever the
+ * time between two consecutive points is greater than the gap threshold, as at Kepler quarter rolls
+ * and safe modes.  The index and the statistics of each segment are built in a single pass, so all
+ * of the per-segment queries below are O(1).
+ * <p>
+ * The statistics are those of the points when the index was built.  Changing the flux or weight of a
+ * DataPoint afterwards does not update them; build the index again with Lightcurve.segment.
+ *
+ */
+
+//import statements:
+import java.util.Arrays;
+
+public class SegmentIndex {
+	//instance variables
+	private double gapThreshold;
+	private int count;
+	private int[] starts;
+	private int[] ends;
+	private double[] fluxSums;
+	private double[] weightSums;
+	private double[] weightedFluxSums;
+	private double[] minFluxes;
+	private double[] maxFluxes;
+
+	/**
+	 * Build the segment index of a Lightcurve
+	 * @param l is the Lightcurve to index
+	 * @param gap is the largest time step allowed within a segment
+	 */
+	public SegmentIndex(Lightcurve l, double gap)	{
+		if(!(gap > 0))
+			throw new IllegalArgumentException("The gap threshold must be greater than zero.");
+		gapThreshold = gap;
+
+		int size = l.size();
+		starts = new int[8];
+		ends = new int[8];
+		fluxSums = new double[8];
+		weightSums = new double[8];
+		weightedFluxSums = new double[8];
+		minFluxes = new double[8];
+		maxFluxes = new double[8];
+		count = 0;
+
+		double lastTime = 0;
+		for(int i = 0; i < size; i++)	{
+			DataPoint d = l.get(i);
+			double time = d.getTime();
+			double flux = d.getFlux();
+			double weight = d.getWeight();
+
+			//open a new segment at the first point and after every gap
+			if(i == 0 || time - lastTime > gapThreshold)	{
+				if(count == starts.length)
+					grow();
+				starts[count] = i;
+				minFluxes[count] = flux;
+				maxFluxes[count] = flux;
+				count++;
+			}
+			int s = count - 1;
+			ends[s] = i;
+			fluxSums[s] += flux;
+			weightSums[s] += weight;
+			weightedFluxSums[s] += flux * weight;
+			if(flux < minFluxes[s])
+				minFluxes[s] = flux;
+			if(flux > maxFluxes[s])
+				maxFluxes[s] = flux;
+			lastTime = time;
+		}
+	}
+
+	/**
+	 * @return the gap threshold this index was built with
+	 */
+	public double getGapThreshold()	{
+		return gapThreshold;
+	}
+
+	/**
+	 * @return the number of segments
+	 */
+	public int size()	{
+		return count;
+	}
+
+	/**
+	 * @param segment is the number of a segment
+	 * @return the index of the first point of the segment in the Lightcurve
+	 */
+	public int getStart(int segment)	{
+		checkSegment(segment);
+		return starts[segment];
+	}
+
+	/**
+	 * @param segment is the number of a segment
+	 * @return the index of the last point of the segment in the Lightcurve
+	 */
+	public int getEnd(int segment)	{
+		checkSegment(segment);
+		return ends[segment];
+	}
+
+	/**
+	 * @param segment is the number of a segment
+	 * @return the number of points in the segment
+	 */
+	public int getCount(int segment)	{
+		checkSegment(segment);
+		return ends[segment] - starts[segment] + 1;
+	}
+
+	/**
+	 * @param segment is the number of a segment
+	 * @return the average flux of the segment
+	 */
+	public double getAverageFlux(int segment)	{
+		return fluxSums[segment] / getCount(segment);
+	}
+
+	/**
+	 * @param segment is the number of a segment
+	 * @return the weighted average flux of the segment
+	 */
+	public double getWeightedAverageFlux(int segment)	{
+		checkSegment(segment);
+		return weightedFluxSums[segment] / weightSums[segment];
+	}
+
+	/**
+	 * @param segment is the number of a segment
+	 * @return the sum of the weights in the segment
+	 */
+	public double getWeightSum(int segment)	{
+		checkSegment(segment);
+		return weightSums[segment];
+	}
+
+	/**
+	 * @param segment is the number of a segment
+	 * @return the minimum flux of the segment
+	 */
+	public double getMinFlux(int segment)	{
+		checkSegment(segment);
+		return minFluxes[segment];
+	}
+
+	/**
+	 * @param segment is the number of a segment
+	 * @return the maximum flux of the segment
+	 */
+	public double getMaxFlux(int segment)	{
+		checkSegment(segment);
+		return maxFluxes[segment];
+	}
+
+	/**
+	 * Find the segment a point belongs to, by binary search over the segment starts
+	 * @param index is the index of a point in the Lightcurve
+	 * @return the number of the segment containing that point
+	 */
+	public int segmentOf(int index)	{
+		if(count == 0 || index < 0 || index > ends[count - 1])
+			throw new IndexOutOfBoundsException("Index " + index + " is not in the indexed Lightcurve.");
+		int low = 0;
+		int high = count - 1;
+		while(low < high)	{
+			int mid = (low + high + 1) >>> 1;
+			if(starts[mid] <= index)
+				low = mid;
+			else
+				high = mid - 1;
+		}
+		return low;
+	}
+
+	/**
+	 * Make sure a segment number is valid
+	 * @param segment is the number of a segment
+	 */
+	private void checkSegment(int segment)	{
+		if(segment < 0 || segment >= count)
+			throw new IndexOutOfBoundsException("Segment " + segment + " does not exist.  There are " + count + " segments.");
+	}
+
+	/**
+	 * Double the capacity of all the per-segment arrays
+	 */
+	private void grow()	{
+		int capacity = starts.length * 2;
+		starts = Arrays.copyOf(starts, capacity);
+		ends = Arrays.copyOf(ends, capacity);
+		fluxSums = Arrays.copyOf(fluxSums, capacity);
+		weightSums = Arrays.copyOf(weightSums, capacity);
+		weightedFluxSums = Arrays.copyOf(weightedFluxSums, capacity);
+		minFluxes = Arrays.copyOf(minFluxes, capacity);
+		maxFluxes = Arrays.copyOf(maxFluxes, capacity);
+	}
+}